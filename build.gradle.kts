@@ -50,6 +50,27 @@ tasks.named<ShadowJar>("shadowJar") {
     relocate("net.kyori", "dev.alexanderdiaz.athenabuild.lib.kyori")
 }
 
+// Timed benchmarks, run with ./gradlew zipWriterBenchmark or ./gradlew generatorBenchmark
+sourceSets {
+    create("benchmark") {
+        compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+        runtimeClasspath += output + compileClasspath
+    }
+}
+
+val benchmarks = mapOf(
+    "zipWriterBenchmark" to "ZipWriterBenchmark",
+    "generatorBenchmark" to "ChunkGeneratorBenchmark",
+)
+benchmarks.forEach { (taskName, className) ->
+    tasks.register<JavaExec>(taskName) {
+        group = "verification"
+        description = "Runs $className"
+        classpath = sourceSets["benchmark"].runtimeClasspath
+        mainClass.set("dev.alexanderdiaz.athenabuild.benchmark.$className")
+    }
+}
+
 spotless {
     java {
         removeUnusedImports()
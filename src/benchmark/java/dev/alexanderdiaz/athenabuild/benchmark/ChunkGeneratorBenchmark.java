@@ -0,0 +1,59 @@
+package dev.alexanderdiaz.athenabuild.benchmark;
+
+import com.sun.management.ThreadMXBean;
+import dev.alexanderdiaz.athenabuild.world.NullChunkGenerator;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Measures the time and heap allocated per chunk by {@link NullChunkGenerator} against the generator it
+ * replaced, which returned a new 64 KB block array from {@code generate}. Allocation is read from the
+ * thread's allocation counter, and every result is stored in a volatile field so the JIT cannot
+ * remove the allocation.
+ * <p>
+ * Run with {@code ./gradlew generatorBenchmark}, optionally with {@code --args="<chunks>"}.
+ */
+public final class ChunkGeneratorBenchmark {
+    private static final int ROUNDS = 3;
+
+    private static volatile Object escape;
+
+    private ChunkGeneratorBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int chunks = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        NullChunkGenerator generator = new NullChunkGenerator();
+        Random random = new Random();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < chunks; i++) {
+                escape = generateOld();
+            }
+            long oldNanos = System.nanoTime() - start;
+            long oldBytes = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+            allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            start = System.nanoTime();
+            for (int i = 0; i < chunks; i++) {
+                escape = generator.generateExtBlockSections(null, random, i, i, null);
+            }
+            long newNanos = System.nanoTime() - start;
+            long newBytes = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+            System.out.printf("round %d: old %.1f ns %d B per chunk | new %.1f ns %d B per chunk%n", round + 1,
+                    oldNanos / (double) chunks, oldBytes / chunks, newNanos / (double) chunks, newBytes / chunks);
+        }
+    }
+
+    /**
+     * What the generator did before, a block id for every block of the chunk
+     */
+    private static byte[] generateOld() {
+        return new byte[65536];
+    }
+}
@@ -0,0 +1,127 @@
+package dev.alexanderdiaz.athenabuild.benchmark;
+
+import dev.alexanderdiaz.athenabuild.util.FileUtils;
+import dev.alexanderdiaz.athenabuild.util.ParallelZipWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Measures the throughput of {@link ParallelZipWriter} for each thread count against a single
+ * {@link ZipOutputStream}, on generated files that compress about as well as region files with NBT.
+ * The archives are written to a discarding stream so only compression is measured.
+ * <p>
+ * Run with {@code ./gradlew zipWriterBenchmark}, optionally with {@code --args="<total MB> <level>"}.
+ */
+public final class ZipWriterBenchmark {
+    private static final int FILE_SIZE = 4 * 1024 * 1024;
+    private static final int WARMUP_RUNS = 1;
+    private static final int MEASURED_RUNS = 3;
+
+    private ZipWriterBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int totalMb = args.length > 0 ? Integer.parseInt(args[0]) : 128;
+        int level = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+
+        Path directory = Files.createTempDirectory("zip-benchmark");
+        try {
+            List<Path> files = createFiles(directory, totalMb * 1024L * 1024L);
+            long bytes = (long) files.size() * FILE_SIZE;
+            System.out.printf("%d files, %d MB, deflate level %d%n", files.size(), bytes >> 20, level);
+
+            report("ZipOutputStream", bytes, () -> writeZipOutputStream(files, level));
+            for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads *= 2) {
+                int poolSize = threads;
+                report("ParallelZipWriter, " + threads + " threads", bytes, () -> writeParallel(files, level, poolSize));
+            }
+        } finally {
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+
+    /**
+     * Random NBT-like data: runs of zeros, repeated small values and some noise
+     */
+    private static List<Path> createFiles(Path directory, long totalBytes) throws IOException {
+        Random random = new Random(42);
+        List<Path> files = new ArrayList<>();
+        for (long written = 0; written < totalBytes; written += FILE_SIZE) {
+            byte[] data = new byte[FILE_SIZE];
+            int position = 0;
+            while (position < data.length) {
+                int run = Math.min(data.length - position, 16 + random.nextInt(512));
+                switch (random.nextInt(3)) {
+                    case 0 -> position += run;
+                    case 1 -> {
+                        byte value = (byte) random.nextInt(16);
+                        for (int i = 0; i < run; i++) {
+                            data[position++] = value;
+                        }
+                    }
+                    default -> {
+                        for (int i = 0; i < run; i++) {
+                            data[position++] = (byte) random.nextInt(64);
+                        }
+                    }
+                }
+            }
+
+            Path file = directory.resolve("r." + files.size() + ".0.mca");
+            Files.write(file, data);
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static void writeZipOutputStream(List<Path> files, int level) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(OutputStream.nullOutputStream())) {
+            zip.setLevel(level);
+            for (Path file : files) {
+                zip.putNextEntry(new ZipEntry("region/" + file.getFileName()));
+                Files.copy(file, zip);
+                zip.closeEntry();
+            }
+        }
+    }
+
+    private static void writeParallel(List<Path> files, int level, int threads) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (ParallelZipWriter writer = new ParallelZipWriter(OutputStream.nullOutputStream(), executor, level, threads)) {
+            for (Path file : files) {
+                writer.addFile("region/" + file.getFileName(), file);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void report(String name, long bytes, Run run) throws IOException {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            run.run();
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-32s %8.1f MB/s (best of %d, %d ms)%n",
+                name, bytes / 1048576.0 / (best / 1e9), MEASURED_RUNS, best / 1_000_000);
+    }
+
+    @FunctionalInterface
+    private interface Run {
+        void run() throws IOException;
+    }
+}
@@ -3,10 +3,18 @@ package dev.alexanderdiaz.athenabuild;
 import dev.alexanderdiaz.athenabuild.command.util.AthenaCommandGraph;
 import dev.alexanderdiaz.athenabuild.config.ConfigurationManager;
 import dev.alexanderdiaz.athenabuild.listener.PlayerListener;
-import dev.alexanderdiaz.athenabuild.world.WorldWrapper;
-import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
+import dev.alexanderdiaz.athenabuild.listener.WorldListener;
+import dev.alexanderdiaz.athenabuild.service.ArchiveExtractor;
+import dev.alexanderdiaz.athenabuild.service.BlobCache;
+import dev.alexanderdiaz.athenabuild.service.BlobDownloader;
+import dev.alexanderdiaz.athenabuild.service.GitHubClient;
+import dev.alexanderdiaz.athenabuild.service.MapCatalogService;
+import dev.alexanderdiaz.athenabuild.service.MapSuggestionService;
+import dev.alexanderdiaz.athenabuild.service.RegionCompactor;
+import dev.alexanderdiaz.athenabuild.service.WorldExporter;
+import dev.alexanderdiaz.athenabuild.world.IdleWorldUnloader;
+import dev.alexanderdiaz.athenabuild.world.WorldPool;
+import dev.alexanderdiaz.athenabuild.world.WorldRegistry;
 import java.util.logging.Level;
 import lombok.Getter;
 import org.bukkit.Bukkit;
@@ -18,6 +26,28 @@ public final class AthenaBuild extends JavaPlugin {
     private static AthenaBuild instance;
     @Getter
     private ConfigurationManager configManager;
+    @Getter
+    private GitHubClient gitHubClient;
+    @Getter
+    private BlobDownloader blobDownloader;
+    @Getter
+    private BlobCache blobCache;
+    @Getter
+    private ArchiveExtractor archiveExtractor;
+    @Getter
+    private WorldExporter worldExporter;
+    @Getter
+    private RegionCompactor regionCompactor;
+    @Getter
+    private MapCatalogService mapCatalogService;
+    @Getter
+    private MapSuggestionService mapSuggestionService;
+    @Getter
+    private WorldRegistry worldRegistry;
+    @Getter
+    private WorldPool worldPool;
+    @Getter
+    private IdleWorldUnloader idleWorldUnloader;
     private AthenaCommandGraph commandGraph;
 
     @Override
@@ -27,6 +57,7 @@ public final class AthenaBuild extends JavaPlugin {
 
         // handle plugin startup
         loadConfiguration();
+        registerServices();
         registerCommands();
         registerListeners();
 
@@ -44,9 +75,63 @@ public final class AthenaBuild extends JavaPlugin {
             this.commandGraph.close();
         }
 
+        if (blobDownloader != null) {
+            this.blobDownloader.shutdown();
+        }
+
+        if (archiveExtractor != null) {
+            this.archiveExtractor.shutdown();
+        }
+
+        if (worldExporter != null) {
+            this.worldExporter.shutdown();
+        }
+
+        if (regionCompactor != null) {
+            this.regionCompactor.shutdown();
+        }
+
+        if (worldRegistry != null) {
+            this.worldRegistry.shutdown();
+        }
+
         getLogger().log(Level.INFO, "AthenaBuild has been disabled!");
     }
 
+    private void registerServices() {
+        try {
+            this.gitHubClient = new GitHubClient(configManager);
+            this.blobDownloader = new BlobDownloader(this, gitHubClient);
+
+            if (configManager.isBlobCacheEnabled()) {
+                this.blobCache = new BlobCache(this);
+                Bukkit.getScheduler().runTaskAsynchronously(this, blobCache::load);
+            }
+
+            this.archiveExtractor = new ArchiveExtractor(this);
+            this.worldExporter = new WorldExporter(this);
+
+            this.mapCatalogService = new MapCatalogService(this, gitHubClient);
+            mapCatalogService.load();
+            mapCatalogService.refresh();
+            this.mapSuggestionService = new MapSuggestionService(mapCatalogService);
+
+            this.worldRegistry = new WorldRegistry(this);
+            worldRegistry.load();
+
+            this.worldPool = new WorldPool(this);
+            worldPool.start();
+
+            this.idleWorldUnloader = new IdleWorldUnloader(this);
+            idleWorldUnloader.start();
+
+            this.regionCompactor = new RegionCompactor(this);
+            regionCompactor.start();
+        } catch (Exception e) {
+            getLogger().log(Level.SEVERE, "Failed to start services", e);
+        }
+    }
+
     private void registerCommands() {
         try {
             this.commandGraph = new AthenaCommandGraph(this);
@@ -59,6 +144,7 @@ public final class AthenaBuild extends JavaPlugin {
         try {
             PluginManager pm = getServer().getPluginManager();
             pm.registerEvents(new PlayerListener(instance), this);
+            pm.registerEvents(new WorldListener(instance), this);
             getLogger().log(Level.INFO, "Listeners registered successfully!");
         } catch (Exception e) {
             getLogger().log(Level.SEVERE, "Failed to register listeners", e);
@@ -73,29 +159,4 @@ public final class AthenaBuild extends JavaPlugin {
             getLogger().log(Level.SEVERE, "Failed to load configuration", e);
         }
     }
-
-    public List<String> athenaWorlds(boolean loadedOnly) {
-        List<String> worlds = new ArrayList<>();
-        File worldsDir = new File(Bukkit.getWorldContainer().getParentFile(), "athena_worlds");
-
-        if (worldsDir.exists() && worldsDir.isDirectory()) {
-            File[] files = worldsDir.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isDirectory()) {
-                        if (!loadedOnly) {
-                            worlds.add(file.getName());
-                        } else {
-                            WorldWrapper wrapper = new WorldWrapper(instance, file.getName());
-                            if (wrapper.isLoaded()) {
-                                worlds.add(file.getName());
-                            }
-                        }
-                    }
-                }
-            }
-        }
-
-        return worlds;
-    }
 }
\ No newline at end of file
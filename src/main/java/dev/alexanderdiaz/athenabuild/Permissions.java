@@ -9,4 +9,5 @@ public interface Permissions {
     String OPEN = ROOT + ".open";
     String CLOSE = ROOT + ".close";
     String DELETE = ROOT + ".delete";
+    String COMPACT = ROOT + ".compact";
 }
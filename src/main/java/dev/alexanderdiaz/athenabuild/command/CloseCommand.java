@@ -30,7 +30,7 @@ public class CloseCommand {
             final CommandSender sender,
             final @Argument(value = "world", suggestions = "loadedWorlds") String worldName) {
 
-        WorldWrapper worldWrapper = new WorldWrapper(plugin, worldName);
+        WorldWrapper worldWrapper = plugin.getWorldRegistry().get(worldName);
 
         if (!worldWrapper.exists()) {
             sender.sendMessage("§cWorld '§e" + worldName + "§c' does not exist!");
@@ -76,6 +76,6 @@ public class CloseCommand {
 
     @Suggestions("loadedWorlds")
     public List<String> suggestWorlds() {
-        return plugin.athenaWorlds(true);
+        return plugin.getWorldRegistry().getLoadedWorldNames();
     }
 }
@@ -0,0 +1,49 @@
+package dev.alexanderdiaz.athenabuild.command;
+
+import dev.alexanderdiaz.athenabuild.AthenaBuild;
+import dev.alexanderdiaz.athenabuild.Permissions;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import org.bukkit.command.CommandSender;
+import org.incendo.cloud.annotations.Argument;
+import org.incendo.cloud.annotations.Command;
+import org.incendo.cloud.annotations.CommandDescription;
+import org.incendo.cloud.annotations.Permission;
+import org.incendo.cloud.annotations.suggestion.Suggestions;
+import org.incendo.cloud.context.CommandContext;
+
+public class CompactCommand {
+    private final AthenaBuild plugin;
+
+    public CompactCommand(AthenaBuild plugin) {
+        this.plugin = plugin;
+    }
+
+    @Command("athena compact <world>")
+    @CommandDescription("Rewrites the region files of a closed world without unused space.")
+    @Permission(Permissions.COMPACT)
+    public void compact(
+            final CommandSender sender,
+            final @Argument(value = "world", suggestions = "compactableWorlds") String worldName) {
+
+        sender.sendMessage("§aCompacting world '§e" + worldName + "§a'...");
+        plugin.getRegionCompactor().compact(worldName).whenComplete((result, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                sender.sendMessage("§cFailed to compact world: " + cause.getMessage());
+                return;
+            }
+
+            sender.sendMessage(String.format("§aCompacted §e%s§a: §e%d§a of §e%d§a region files rewritten, reclaimed §e%.1f MB§a.",
+                    worldName, result.rewritten(), result.regionFiles(), result.bytesReclaimed() / 1048576.0));
+            if (result.droppedChunks() > 0) {
+                sender.sendMessage("§7Dropped " + result.droppedChunks() + " unreadable chunk(s).");
+            }
+        });
+    }
+
+    @Suggestions("compactableWorlds")
+    public List<String> suggestWorlds(CommandContext<CommandSender> context) {
+        return plugin.getWorldRegistry().getIndex().complete(context.rawInput().lastRemainingToken());
+    }
+}
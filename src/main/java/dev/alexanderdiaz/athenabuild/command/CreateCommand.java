@@ -3,18 +3,24 @@ package dev.alexanderdiaz.athenabuild.command;
 import dev.alexanderdiaz.athenabuild.AthenaBuild;
 import dev.alexanderdiaz.athenabuild.Permissions;
 import dev.alexanderdiaz.athenabuild.world.WorldWrapper;
+import java.io.File;
 import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
 import net.md_5.bungee.api.chat.ClickEvent;
 import net.md_5.bungee.api.chat.ComponentBuilder;
 import net.md_5.bungee.api.chat.HoverEvent;
 import net.md_5.bungee.api.chat.TextComponent;
+import org.bukkit.Bukkit;
 import org.bukkit.Sound;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.incendo.cloud.annotations.Argument;
 import org.incendo.cloud.annotations.Command;
 import org.incendo.cloud.annotations.CommandDescription;
+import org.incendo.cloud.annotations.Flag;
 import org.incendo.cloud.annotations.Permission;
+import org.incendo.cloud.annotations.suggestion.Suggestions;
 
 public class CreateCommand {
     private final AthenaBuild plugin;
@@ -26,7 +32,10 @@ public class CreateCommand {
     @Command(value = "create|new <name>")
     @CommandDescription(value = "Create a new world given a world name.")
     @Permission(Permissions.CREATE)
-    public void create(CommandSender sender, @Argument(value = "name") String name) {
+    public void create(
+            CommandSender sender,
+            @Argument(value = "name") String name,
+            @Flag(value = "template", suggestions = "templateWorlds", description = "Clone an existing world instead of creating a void world") String template) {
         if (!(sender instanceof Player)) {
             sender.sendMessage("§cOnly players can create worlds.");
             return;
@@ -40,8 +49,17 @@ public class CreateCommand {
             return;
         }
 
+        if (template != null) {
+            createFromTemplate(player, worldWrapper, template);
+            return;
+        }
+
         player.sendMessage("§aCreating new void world...");
-        if (worldWrapper.createVoidWorld()) {
+        // A pooled world only needs to be moved and loaded, generating one is the fallback
+        File pooledWorld = plugin.getWorldPool().claim();
+        boolean created = pooledWorld != null && worldWrapper.claimPooledWorld(pooledWorld)
+                || !worldWrapper.exists() && worldWrapper.createVoidWorld();
+        if (created) {
             player.playSound(player.getLocation(), Sound.LEVEL_UP, 1, 1f);
             sendCreatedMessage(player, worldWrapper.getWorldName());
         } else {
@@ -49,6 +67,41 @@ public class CreateCommand {
         }
     }
 
+    private void createFromTemplate(Player player, WorldWrapper worldWrapper, String templateName) {
+        WorldWrapper template = plugin.getWorldRegistry().get(templateName);
+        if (!template.exists()) {
+            player.sendMessage("§cWorld with name §e§l" + templateName + "§r§c not found.");
+            return;
+        }
+
+        // The files are cloned straight into the new world, which cannot be opened before they are complete
+        player.sendMessage("§aCloning §e" + templateName + "§a...");
+        worldWrapper.cloneFrom(template).whenComplete((ignored, error) -> {
+            try {
+                if (error != null) {
+                    throw error;
+                }
+
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    if (worldWrapper.loadWorld()) {
+                        player.playSound(player.getLocation(), Sound.LEVEL_UP, 1, 1f);
+                        sendCreatedMessage(player, worldWrapper.getWorldName());
+                    } else {
+                        player.sendMessage("§cFailed to load world after cloning! Check console for details.");
+                    }
+                });
+            } catch (Throwable e) {
+                player.sendMessage("§cError while cloning world: " + e.getMessage());
+                plugin.getLogger().log(Level.SEVERE, "Error while cloning world " + templateName, e);
+            }
+        });
+    }
+
+    @Suggestions("templateWorlds")
+    public List<String> suggestTemplates() {
+        return plugin.getWorldRegistry().getWorldNames();
+    }
+
     private void sendCreatedMessage(Player player, String worldName) {
         String openCommand = "/open " + worldName;
 
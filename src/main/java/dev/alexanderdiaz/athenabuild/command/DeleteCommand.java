@@ -5,7 +5,6 @@ import dev.alexanderdiaz.athenabuild.Permissions;
 import dev.alexanderdiaz.athenabuild.world.WorldWrapper;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.conversations.Conversation;
@@ -41,7 +40,7 @@ public class DeleteCommand {
         }
 
         Player player = (Player) sender;
-        WorldWrapper worldWrapper = new WorldWrapper(plugin, worldName);
+        WorldWrapper worldWrapper = plugin.getWorldRegistry().get(worldName);
 
         if (!worldWrapper.exists()) {
             player.sendMessage("\n§cWorld '§e" + worldName + "§c' does not exist!\n");
@@ -72,12 +71,7 @@ public class DeleteCommand {
 
     @Suggestions("worlds")
     public List<String> suggestWorlds(CommandContext<CommandSender> context) {
-        String input = context.rawInput().lastRemainingToken().toLowerCase();
-
-        return plugin.athenaWorlds(false)
-                .stream()
-                .filter(world -> world.toLowerCase().startsWith(input))
-                .collect(Collectors.toList());
+        return plugin.getWorldRegistry().getIndex().complete(context.rawInput().lastRemainingToken());
     }
 
     private class DeleteConfirmPrompt extends StringPrompt {
@@ -102,7 +96,7 @@ public class DeleteCommand {
             Player player = (Player) context.getForWhom();
 
             if (input.equalsIgnoreCase("yes")) {
-                WorldWrapper worldWrapper = new WorldWrapper(plugin, worldName);
+                WorldWrapper worldWrapper = plugin.getWorldRegistry().get(worldName);
 
                 boolean success = worldWrapper.deleteWorld();
 
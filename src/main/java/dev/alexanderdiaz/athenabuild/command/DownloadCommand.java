@@ -2,38 +2,41 @@ package dev.alexanderdiaz.athenabuild.command;
 
 import dev.alexanderdiaz.athenabuild.AthenaBuild;
 import dev.alexanderdiaz.athenabuild.Permissions;
+import dev.alexanderdiaz.athenabuild.service.ExportArea;
+import dev.alexanderdiaz.athenabuild.service.WorldExporter;
+import dev.alexanderdiaz.athenabuild.service.WorldManifest;
+import dev.alexanderdiaz.athenabuild.util.CloseShieldOutputStream;
 import dev.alexanderdiaz.athenabuild.world.WorldWrapper;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.nio.file.Files;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 import net.md_5.bungee.api.chat.ClickEvent;
 import net.md_5.bungee.api.chat.ComponentBuilder;
 import net.md_5.bungee.api.chat.HoverEvent;
 import net.md_5.bungee.api.chat.TextComponent;
-import org.bukkit.Bukkit;
 import org.bukkit.Sound;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.incendo.cloud.annotations.Argument;
 import org.incendo.cloud.annotations.Command;
 import org.incendo.cloud.annotations.CommandDescription;
+import org.incendo.cloud.annotations.Flag;
 import org.incendo.cloud.annotations.Permission;
 import org.incendo.cloud.annotations.suggestion.Suggestions;
 import org.jetbrains.annotations.NotNull;
 
 public final class DownloadCommand {
+    private static final int UPLOAD_CHUNK_SIZE = 65536;
+
     private final AthenaBuild plugin;
 
     public DownloadCommand(AthenaBuild plugin) {
@@ -45,7 +48,9 @@ public final class DownloadCommand {
     @Permission(Permissions.DOWNLOAD)
     public void downloadWorld(
             final CommandSender sender,
-            @Argument(value = "world", suggestions = "worldNames") String worldName) {
+            @Argument(value = "world", suggestions = "worldNames") String worldName,
+            @Flag(value = "region", description = "Only export the blocks between x1,z1,x2,z2") String region,
+            @Flag(value = "since", description = "Only export the changes since an earlier download") String since) {
         if (!(sender instanceof Player)) {
             sender.sendMessage("§cOnly players can download worlds.");
             return;
@@ -53,49 +58,93 @@ public final class DownloadCommand {
 
         Player player = (Player) sender;
         if (worldName == null) {
-            worldName = player.getWorld().getName();
+            String currentWorld = plugin.getWorldRegistry().nameOf(player.getWorld());
+            worldName = currentWorld != null ? currentWorld : player.getWorld().getName();
         }
-        WorldWrapper worldWrapper = new WorldWrapper(plugin, worldName);
+        WorldWrapper worldWrapper = plugin.getWorldRegistry().get(worldName);
 
         if (!worldWrapper.exists()) {
             player.sendMessage("§cWorld with name §e§l" + worldName + "§r§c not found.");
             return;
         }
 
-        String fileWorldName = worldName + "-" + UUID.randomUUID().toString().substring(0, 6);
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+        ExportArea area = null;
+        if (region != null) {
             try {
-                player.sendMessage("§aStarting world download process...");
-
-                // Create temporary zip file
-                File tempZip = new File(plugin.getDataFolder(), fileWorldName + ".zip");
-                tempZip.getParentFile().mkdirs();
-
-                // Zip the world folder
-                player.sendMessage("§aCompressing world folder...");
-                zipWorld(worldWrapper.getWorldDirectory(), tempZip);
+                area = ExportArea.parse(region);
+            } catch (IllegalArgumentException e) {
+                player.sendMessage("§cInvalid region: " + e.getMessage());
+                return;
+            }
+        }
+        if (area != null && since != null) {
+            player.sendMessage("§cA download cannot use both --region and --since.");
+            return;
+        }
 
-                // Upload
-                player.sendMessage("§aUploading to transfer.alexanderdiaz.zip...");
-                String downloadUrl = uploadToTransferSh(tempZip);
+        // The export id is recorded so later downloads can be patches against this one
+        String exportId = UUID.randomUUID().toString().substring(0, 6);
+        String fileWorldName = worldName + "-" + exportId + (since != null ? "-patch" : "");
+        String exportName = worldName;
+        ExportArea exportArea = area;
+        player.sendMessage("§aStarting world download process...");
+
+        // Saving and snapshotting happens here on the main thread, compressing runs on the copy, or on the
+        // world itself if it is not loaded. A world that has not changed since its last export is neither
+        // copied nor compressed again
+        WorldExporter exporter = plugin.getWorldExporter();
+        AtomicReference<WorldManifest> manifest = new AtomicReference<>();
+        File snapshotDir = new File(plugin.getDataFolder(), "snapshots/" + fileWorldName);
+        // Partial exports only copy the files inside the area, neither they nor patches are cached
+        worldWrapper.snapshot(snapshotDir, path -> exportArea == null || exportArea.includes(path), worldDir -> {
+            if (exportArea != null || since != null) {
+                return true;
+            }
+            manifest.set(exporter.scan(exportName, worldDir));
+            return !exporter.isCached(exportName, manifest.get());
+        }).whenComplete((snapshot, error) -> {
+            try {
+                if (error != null) {
+                    throw error;
+                }
 
-                tempZip.delete();
+                File exportDir = snapshot.getDirectory();
+                String downloadId = exportId;
+                String downloadUrl;
+                if (exportDir == null) {
+                    // The cached archive is uploaded as-is, the world itself is not needed anymore
+                    snapshot.close();
+                    // The archive carries the id it was first downloaded with, so patches against it still apply
+                    downloadId = exporter.getCachedExportId(exportName);
+                    player.sendMessage("§aWorld unchanged since its last download, uploading to transfer.alexanderdiaz.zip...");
+                    downloadUrl = uploadToTransferSh(exportName + "-" + downloadId + ".zip", output -> exporter.exportCached(exportName, output));
+                } else {
+                    // Compress straight into the upload and the export cache
+                    player.sendMessage("§aCompressing and uploading to transfer.alexanderdiaz.zip...");
+                    downloadUrl = uploadToTransferSh(fileWorldName + ".zip",
+                            output -> exporter.export(exportDir, exportName,
+                                    new WorldExporter.Options(exportId, manifest.get(), exportArea, since), output));
+                }
 
                 player.playSound(player.getLocation(), Sound.LEVEL_UP, 1, 1);
-                sendDownloadMessage(player, downloadUrl);
-            } catch (Exception e) {
+                sendDownloadMessage(player, downloadUrl, exportArea == null ? downloadId : null);
+            } catch (Throwable e) {
                 player.sendMessage("§cError while processing world download: " + e.getMessage());
                 plugin.getLogger().log(Level.SEVERE, "Error while processing world download", e);
+            } finally {
+                if (snapshot != null) {
+                    snapshot.close();
+                }
             }
         });
     }
 
     @Suggestions("worldNames")
     public List<String> suggestWorlds() {
-        return plugin.athenaWorlds(true);
+        return plugin.getWorldRegistry().getLoadedWorldNames();
     }
 
-    private void sendDownloadMessage(Player player, String downloadUrl) {
+    private void sendDownloadMessage(Player player, String downloadUrl, String exportId) {
         TextComponent message = new TextComponent("");
         message.addExtra("§8§l" + String.join("", Collections.nCopies(40, "-")) + "\n");
         message.addExtra("§a§lWorld Download Ready!\n");
@@ -115,38 +164,28 @@ public final class DownloadCommand {
 
         message.addExtra(downloadComponent);
         message.addExtra("\n\n§7§oThis link expires after one download or 7 days\n");
+        if (exportId != null) {
+            message.addExtra("§7Export ID: §f" + exportId + "§7, download only later changes with §f--since " + exportId + "\n");
+        }
         message.addExtra("§8§l" + String.join("", Collections.nCopies(40, "-")));
 
         player.spigot().sendMessage(message);
     }
 
-    private void zipWorld(File worldFolder, File zipFile) throws IOException {
-        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zipFile.toPath()))) {
-            zipFolder(worldFolder, worldFolder.getName(), zos);
-        }
-    }
-
-    private void zipFolder(File folder, String baseName, ZipOutputStream zos) throws IOException {
-        File[] files = folder.listFiles();
-        if (files == null) return;
-
-        for (File file : files) {
-            // Skip session.lock to avoid issues
-            if (file.getName().equals("session.lock")) continue;
-
-            String filePath = baseName + "/" + file.getName();
-            if (file.isDirectory()) {
-                zipFolder(file, filePath, zos);
-            } else {
-                zos.putNextEntry(new ZipEntry(filePath));
-                Files.copy(file.toPath(), zos);
-                zos.closeEntry();
-            }
+    private String uploadToTransferSh(String fileName, ArchiveWriter archiveWriter) throws IOException {
+        HttpURLConnection connection = getHttpURLConnection(fileName);
+
+        // The archive is streamed in chunks, so the JDK never holds the whole world. Closing the stream sends
+        // the final chunk, which would make the server keep a truncated archive, so the writer cannot close
+        // it and a failed archive aborts the request instead
+        OutputStream output = connection.getOutputStream();
+        try {
+            archiveWriter.write(new CloseShieldOutputStream(output));
+        } catch (IOException | RuntimeException e) {
+            connection.disconnect();
+            throw e;
         }
-    }
-
-    private String uploadToTransferSh(File file) throws IOException {
-        HttpURLConnection connection = getHttpURLConnection(file);
+        output.close();
 
         int responseCode = connection.getResponseCode();
 
@@ -179,23 +218,20 @@ public final class DownloadCommand {
         }
     }
 
-    private static @NotNull HttpURLConnection getHttpURLConnection(File file) throws IOException {
-        URL url = new URL("https://transfer.alexanderdiaz.zip/" + file.getName());
+    private static @NotNull HttpURLConnection getHttpURLConnection(String fileName) throws IOException {
+        URL url = new URL("https://transfer.alexanderdiaz.zip/" + fileName);
         HttpURLConnection connection = (HttpURLConnection) url.openConnection();
         connection.setRequestMethod("PUT");
         connection.setDoOutput(true);
+        connection.setChunkedStreamingMode(UPLOAD_CHUNK_SIZE);
         connection.setRequestProperty("Content-Type", "application/octet-stream");
         connection.setRequestProperty("Max-Downloads", "1");
         connection.setRequestProperty("Max-Days", "7");
-
-        try (OutputStream output = connection.getOutputStream();
-             FileInputStream input = new FileInputStream(file)) {
-            byte[] buffer = new byte[8192];
-            int length;
-            while ((length = input.read(buffer)) > 0) {
-                output.write(buffer, 0, length);
-            }
-        }
         return connection;
     }
+
+    @FunctionalInterface
+    private interface ArchiveWriter {
+        void write(OutputStream output) throws IOException;
+    }
 }
@@ -2,10 +2,13 @@ package dev.alexanderdiaz.athenabuild.command;
 
 import dev.alexanderdiaz.athenabuild.AthenaBuild;
 import dev.alexanderdiaz.athenabuild.Permissions;
+import dev.alexanderdiaz.athenabuild.config.ConfigurationManager;
+import dev.alexanderdiaz.athenabuild.world.ChunkPreloader;
 import dev.alexanderdiaz.athenabuild.world.WorldWrapper;
 import java.util.List;
 import org.bukkit.Bukkit;
 import org.bukkit.GameMode;
+import org.bukkit.Location;
 import org.bukkit.Sound;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
@@ -37,7 +40,7 @@ public class OpenCommand {
         }
 
         Player player = (Player) sender;
-        WorldWrapper worldWrapper = new WorldWrapper(plugin, worldName);
+        WorldWrapper worldWrapper = plugin.getWorldRegistry().get(worldName);
 
         if (!worldWrapper.exists()) {
             player.sendMessage("§cWorld '§e§l" + worldName + "§r§c' does not exist!");
@@ -46,12 +49,29 @@ public class OpenCommand {
 
         player.sendMessage("§aOpening world...");
 
-        if (!worldWrapper.isLoaded() && !worldWrapper.loadWorld()) {
+        // The spawn area is loaded by the preloader below instead of all at once while loading the world
+        if (!worldWrapper.isLoaded() && !worldWrapper.loadWorld(false)) {
             player.sendMessage("§cFailed to load world! Check console for details.");
             return;
         }
 
-        player.teleport(worldWrapper.getSpawnLocation());
+        // Load the spawn area over a few ticks first, the teleport would load all of it in one tick
+        ConfigurationManager config = plugin.getConfigManager();
+        Location spawn = worldWrapper.getSpawnLocation();
+        ChunkPreloader.preload(plugin, spawn, config.getPreloadRadius(), Math.max(1, config.getPreloadBudgetMs()) * 1_000_000L)
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        player.sendMessage("§cWorld '§e§l" + worldName + "§r§c' was closed while opening it.");
+                        return;
+                    }
+                    if (player.isOnline()) {
+                        teleport(player, spawn, worldName);
+                    }
+                });
+    }
+
+    private void teleport(Player player, Location spawn, String worldName) {
+        player.teleport(spawn);
         player.setFlying(true);
         player.setAllowFlight(true);
         player.setGameMode(GameMode.CREATIVE);
@@ -65,9 +85,6 @@ public class OpenCommand {
 
     @Suggestions("availableWorlds")
     public List<String> suggestWorlds(CommandContext<CommandSender> context) {
-        String input = context.rawInput().lastRemainingToken().toLowerCase();
-        return plugin.athenaWorlds(false).stream().filter(world -> {
-            return world.toLowerCase().startsWith(input);
-        }).toList();
+        return plugin.getWorldRegistry().getIndex().complete(context.rawInput().lastRemainingToken());
     }
 }
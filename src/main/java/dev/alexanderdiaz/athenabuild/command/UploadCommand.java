@@ -3,24 +3,28 @@ package dev.alexanderdiaz.athenabuild.command;
 import dev.alexanderdiaz.athenabuild.AthenaBuild;
 import dev.alexanderdiaz.athenabuild.Permissions;
 import dev.alexanderdiaz.athenabuild.config.ConfigurationManager;
+import dev.alexanderdiaz.athenabuild.service.ArchiveExtractor;
+import dev.alexanderdiaz.athenabuild.service.GitHubArchiveDownloader;
+import dev.alexanderdiaz.athenabuild.service.GitHubClient;
+import dev.alexanderdiaz.athenabuild.service.GitHubTreeDownloader;
+import dev.alexanderdiaz.athenabuild.service.MapCatalogService;
 import dev.alexanderdiaz.athenabuild.service.MapSuggestionService;
+import dev.alexanderdiaz.athenabuild.service.WorldExporter;
+import dev.alexanderdiaz.athenabuild.util.FileUtils;
+import dev.alexanderdiaz.athenabuild.util.LimitedInputStream;
 import dev.alexanderdiaz.athenabuild.world.WorldWrapper;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 import net.md_5.bungee.api.chat.ClickEvent;
 import net.md_5.bungee.api.chat.ComponentBuilder;
 import net.md_5.bungee.api.chat.HoverEvent;
@@ -42,14 +46,27 @@ import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 
 public final class UploadCommand {
+    // How many folders deep level.dat may be nested inside an uploaded ZIP
+    private static final int MAX_WORLD_ROOT_DEPTH = 4;
+
     private final AthenaBuild plugin;
     private final ConfigurationManager config;
+    private final GitHubClient client;
+    private final MapCatalogService mapCatalogService;
     private final MapSuggestionService mapSuggestionService;
+    private final GitHubArchiveDownloader archiveDownloader;
+    private final GitHubTreeDownloader treeDownloader;
+    private final ArchiveExtractor archiveExtractor;
 
     public UploadCommand(AthenaBuild plugin) {
         this.plugin = plugin;
         this.config = plugin.getConfigManager();
-        this.mapSuggestionService = new MapSuggestionService(plugin);
+        this.client = plugin.getGitHubClient();
+        this.mapCatalogService = plugin.getMapCatalogService();
+        this.mapSuggestionService = plugin.getMapSuggestionService();
+        this.archiveDownloader = new GitHubArchiveDownloader(plugin, client);
+        this.treeDownloader = new GitHubTreeDownloader(plugin, client, plugin.getBlobDownloader(), plugin.getBlobCache());
+        this.archiveExtractor = plugin.getArchiveExtractor();
     }
 
     @Command("upload git <category> <mapName>")
@@ -90,6 +107,7 @@ public final class UploadCommand {
         String folderPath = buildFolderPath(category, mapName);
 
         Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            File tempDir = new File(plugin.getDataFolder(), "temp/" + worldName);
             try {
                 player.sendMessage("§aStarting world upload process...");
                 player.sendMessage("§7Category: " + category);
@@ -97,19 +115,28 @@ public final class UploadCommand {
                 player.sendMessage("§7World Name: " + worldName);
                 player.sendMessage("§7Path: " + folderPath);
 
+                // Validate the map against the catalog
+                String treeSha = findMapTree(category, mapName);
+                if (treeSha == null) {
+                    player.sendMessage("§cMap §e" + mapName + "§c was not found in category §e" + category + "§c.");
+                    return;
+                }
+
                 // Download folder from GitHub
                 player.sendMessage("§aDownloading from GitHub...");
-                File tempDir = new File(plugin.getDataFolder(), "temp/" + worldName);
                 if (!tempDir.exists()) {
                     tempDir.mkdirs();
                 }
 
-                downloadFolderFromGitHub(folderPath, tempDir);
+                downloadFolderFromGitHub(folderPath, treeSha, tempDir);
+
+                // Move the files into place off the main thread
+                worldWrapper.stageWorld(tempDir);
 
                 // Load world on main thread
                 Bukkit.getScheduler().runTask(plugin, () -> {
                     try {
-                        if (worldWrapper.importWorld(tempDir)) {
+                        if (worldWrapper.loadImportedWorld()) {
                             player.playSound(player.getLocation(), Sound.LEVEL_UP, 1, 1f);
                             sendImportMessage(player, worldName);
                         } else {
@@ -118,14 +145,16 @@ public final class UploadCommand {
                     } catch (Exception e) {
                         player.sendMessage("§cError loading world: " + e.getMessage());
                         plugin.getLogger().log(Level.SEVERE, ChatColor.RED + "Error loading world", e);
-                    } finally {
-                        deleteDirectory(tempDir);
                     }
                 });
 
             } catch (Exception e) {
                 player.sendMessage("§cError while processing world upload: " + e.getMessage());
                 plugin.getLogger().log(Level.SEVERE, ChatColor.RED + "Error while processing world upload", e);
+            } finally {
+                if (tempDir.exists()) {
+                    deleteDirectory(tempDir);
+                }
             }
         });
     }
@@ -161,45 +190,40 @@ public final class UploadCommand {
         WorldWrapper worldWrapper = new WorldWrapper(plugin, sanitizedWorldName);
 
         Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            File tempZip = null;
             File tempDir = null;
             try {
                 player.sendMessage("§aStarting world upload from URL...");
                 player.sendMessage("§7World Name: " + sanitizedWorldName);
                 player.sendMessage("§7URL: " + url);
 
-                // Download ZIP file
-                player.sendMessage("§aDownloading ZIP file...");
-                tempZip = new File(plugin.getDataFolder(), "temp/" + sanitizedWorldName + ".zip");
-                tempZip.getParentFile().mkdirs();
-                downloadFile(url, tempZip);
-
-                // Extract ZIP to temporary directory
-                player.sendMessage("§aExtracting world files...");
+                // Extract the ZIP while it is being downloaded
+                player.sendMessage("§aDownloading and extracting world files...");
                 tempDir = new File(plugin.getDataFolder(), "temp/" + sanitizedWorldName);
-                if (!tempDir.exists()) {
-                    tempDir.mkdirs();
+                if (tempDir.exists()) {
+                    deleteDirectory(tempDir);
                 }
-                unzipFile(tempZip, tempDir);
+                tempDir.mkdirs();
+                String worldRootPath = downloadAndExtract(url, tempDir, "level.dat");
 
                 // Validate world files
                 player.sendMessage("§aValidating world files...");
-                File worldRoot = findWorldRoot(tempDir);
-                if (worldRoot == null) {
+                if (worldRootPath == null) {
                     player.sendMessage("§cInvalid world! The ZIP must contain a valid Minecraft world with level.dat");
                     return;
                 }
+                File worldRoot = worldRootPath.isEmpty() ? tempDir : FileUtils.resolveInside(tempDir, worldRootPath);
 
                 // Clean up world-specific files before importing
                 player.sendMessage("§aCleaning up world files...");
                 cleanUpWorldFiles(worldRoot);
 
+                // Move the files into place off the main thread
+                worldWrapper.stageWorld(worldRoot);
+
                 // Load world on main thread
-                File finalTempDir = tempDir;
-                File finalTempZip = tempZip;
                 Bukkit.getScheduler().runTask(plugin, () -> {
                     try {
-                        if (worldWrapper.importWorld(worldRoot)) {
+                        if (worldWrapper.loadImportedWorld()) {
                             player.playSound(player.getLocation(), Sound.LEVEL_UP, 1, 1f);
                             sendImportMessage(player, sanitizedWorldName);
                             worldWrapper.prepareImportedWorld();
@@ -209,32 +233,86 @@ public final class UploadCommand {
                     } catch (Exception e) {
                         player.sendMessage("§cError loading world: " + e.getMessage());
                         plugin.getLogger().log(Level.SEVERE, ChatColor.RED + "Error loading world", e);
-                    } finally {
-                        // Clean up temp files
-                        if (finalTempZip != null && finalTempZip.exists()) {
-                            finalTempZip.delete();
-                        }
-                        if (finalTempDir != null && finalTempDir.exists()) {
-                            deleteDirectory(finalTempDir);
-                        }
                     }
                 });
 
             } catch (Exception e) {
                 player.sendMessage("§cError while processing world upload: " + e.getMessage());
                 plugin.getLogger().log(Level.SEVERE, ChatColor.RED + "Error while processing world upload from URL", e);
+            } finally {
+                // Clean up temp files
+                if (tempDir != null && tempDir.exists()) {
+                    deleteDirectory(tempDir);
+                }
+            }
+        });
+    }
+
+    @Command("upload patch <world> <url>")
+    @CommandDescription("Applies a patch created by /download --since to a closed world.")
+    @Permission(Permissions.UPLOAD)
+    public void uploadPatch(
+            final CommandSender sender,
+            final @Argument(value = "world", suggestions = "patchableWorlds", description = "The world to apply the patch to.") String worldName,
+            final @Argument(value = "url", description = "The URL of the patch.") @Greedy String url
+    ) {
+        WorldWrapper worldWrapper = plugin.getWorldRegistry().get(worldName);
+        if (!worldWrapper.exists()) {
+            sender.sendMessage("§cWorld '§e" + worldName + "§c' does not exist!");
+            return;
+        }
+
+        try {
+            new URL(url);
+        } catch (MalformedURLException e) {
+            sender.sendMessage("§cInvalid URL: " + e.getMessage());
+            return;
+        }
+
+        // Keeps the world closed until the patch is applied
+        if (!plugin.getWorldRegistry().beginMaintenance(worldName)) {
+            sender.sendMessage("§cWorld '§e" + worldName + "§c' must be closed and idle to apply a patch.");
+            return;
+        }
 
-                // Clean up temp files on error
-                if (tempZip != null && tempZip.exists()) {
-                    tempZip.delete();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            File tempDir = new File(plugin.getDataFolder(), "temp/" + worldName + "-patch");
+            try {
+                sender.sendMessage("§aDownloading and extracting patch...");
+                if (tempDir.exists()) {
+                    deleteDirectory(tempDir);
                 }
-                if (tempDir != null && tempDir.exists()) {
+                tempDir.mkdirs();
+
+                String patchRootPath = downloadAndExtract(url, tempDir, WorldExporter.PATCH_FILE);
+                if (patchRootPath == null) {
+                    sender.sendMessage("§cInvalid patch! The ZIP must be a patch created with /download --since");
+                    return;
+                }
+                File patchRoot = patchRootPath.isEmpty() ? tempDir : FileUtils.resolveInside(tempDir, patchRootPath);
+
+                // A patch must not bring back the files removed on import
+                cleanUpWorldFiles(patchRoot);
+
+                int changed = worldWrapper.applyPatch(patchRoot);
+                sender.sendMessage("§aApplied patch to §e" + worldName + "§a, " + changed + " file(s) changed.");
+            } catch (Exception e) {
+                sender.sendMessage("§cError while applying patch: " + e.getMessage());
+                plugin.getLogger().log(Level.SEVERE, "Error while applying patch to " + worldName, e);
+            } finally {
+                plugin.getWorldRegistry().endMaintenance(worldName);
+                if (tempDir.exists()) {
                     deleteDirectory(tempDir);
                 }
             }
         });
     }
 
+    @Suggestions("patchableWorlds")
+    public List<String> suggestPatchableWorlds(CommandContext<CommandSender> context) {
+        return plugin.getWorldRegistry().getIndex().complete(context.rawInput().lastRemainingToken());
+    }
+
     private void sendImportMessage(Player player, String worldName) {
         String importCommand = "/open " + worldName;
 
@@ -292,20 +370,51 @@ public final class UploadCommand {
         return basePath + category + "/" + mapName;
     }
 
-    private void downloadFolderFromGitHub(String folderPath, File targetDir) throws Exception {
+    /**
+     * Looks the map up in the catalog. A map missing from the catalog may have been pushed after the
+     * last refresh, so the catalog is refreshed once before the map is reported as missing.
+     *
+     * @return The git tree SHA of the map folder, an empty string if the catalog is unavailable, or null if the map does not exist
+     */
+    private String findMapTree(String category, String mapName) {
+        MapCatalogService.MapCatalog catalog = mapCatalogService.getCatalog();
+        String treeSha = catalog.getTreeSha(category, mapName);
+        if (treeSha != null) {
+            return treeSha;
+        }
+
+        try {
+            catalog = mapCatalogService.refresh().get(30, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Map catalog unavailable, importing " + mapName + " by path", e);
+            return "";
+        }
+        return catalog.getTreeSha(category, mapName);
+    }
+
+    private void downloadFolderFromGitHub(String folderPath, String treeSha, File targetDir) throws Exception {
+        if ("archive".equals(config.getGithubDownloadMode())) {
+            archiveDownloader.downloadFolder(folderPath, targetDir);
+            return;
+        }
+
+        if ("tree".equals(config.getGithubDownloadMode())) {
+            if (treeSha.isEmpty()) {
+                treeDownloader.downloadFolder(folderPath, targetDir);
+            } else {
+                treeDownloader.downloadTree(treeSha, targetDir);
+            }
+            return;
+        }
+
         // Use GitHub Contents API to recursively download folder contents
-        String contentsUrl = String.format("%s/repos/%s/%s/contents/%s?ref=%s",
-                config.getGithubApiUrl(),
-                config.getGithubOrganization(),
-                config.getGithubRepository(),
-                folderPath,
-                config.getDefaultBranch());
+        String contentsUrl = client.repoUrl("contents/" + folderPath + "?ref=" + config.getDefaultBranch());
 
         downloadFolderRecursive(contentsUrl, targetDir, "");
     }
 
     private void downloadFolderRecursive(String contentsUrl, File targetDir, String relativePath) throws Exception {
-        String response = fetchFromGitHub(contentsUrl);
+        String response = client.fetchString(contentsUrl);
 
         JSONParser parser = new JSONParser();
         JSONArray items = (JSONArray) parser.parse(response);
@@ -332,85 +441,87 @@ public final class UploadCommand {
                 // Download file
                 String downloadUrl = (String) entry.get("download_url");
                 File targetFile = new File(targetDir, relativePath.isEmpty() ? name : relativePath + "/" + name);
-                downloadFile(downloadUrl, targetFile);
-            }
-        }
-    }
-
-    private String fetchFromGitHub(String urlString) throws Exception {
-        URL url = new URL(urlString);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
-        connection.setRequestProperty("Authorization", "Bearer " + config.getGithubToken());
-        connection.setRequestProperty("Accept", "application/vnd.github+json");
-        connection.setRequestProperty("X-GitHub-Api-Version", "2022-11-28");
-        connection.setRequestProperty("User-Agent", "AthenaBuild");
-
-        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
-            String errorMessage = "";
-            try (InputStream errorStream = connection.getErrorStream()) {
-                if (errorStream != null) {
-                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(errorStream, StandardCharsets.UTF_8))) {
-                        StringBuilder response = new StringBuilder();
-                        String line;
-                        while ((line = reader.readLine()) != null) {
-                            response.append(line);
-                        }
-                        errorMessage = response.toString();
-                    }
+                try (InputStream inputStream = client.openStream(downloadUrl, GitHubClient.ACCEPT_RAW)) {
+                    Files.copy(inputStream, targetFile.toPath());
                 }
             }
-            throw new IOException(String.format("Failed to fetch from GitHub: %d - %s. Response: %s",
-                    connection.getResponseCode(),
-                    connection.getResponseMessage(),
-                    errorMessage));
-        }
-
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                response.append(line);
-            }
-            return response.toString();
         }
     }
 
-    private void downloadFile(String downloadUrl, File targetFile) throws IOException {
+    /**
+     * Downloads a ZIP file and extracts it. With extract_mode stream the archive is extracted while it
+     * is being received and never stored, with parallel it is downloaded first and then extracted on
+     * all cores. Both the downloaded and the extracted bytes are limited to the maximum upload size.
+     *
+     * @param downloadUrl The URL of the ZIP file
+     * @param destDir     The directory to extract into
+     * @param marker      The name of the file marking the root folder, e.g. level.dat for a world
+     * @return The path of the directory containing the marker relative to destDir, an empty string
+     * for destDir itself, or null if the archive does not contain it
+     * @throws IOException If the download failed, the archive is invalid or exceeds a limit
+     */
+    private String downloadAndExtract(String downloadUrl, File destDir, String marker) throws IOException {
         URL url = new URL(downloadUrl);
         HttpURLConnection connection = (HttpURLConnection) url.openConnection();
         connection.setRequestMethod("GET");
-        // Raw content doesn't need authentication for public repos, but we'll add it for private repos
-        connection.setRequestProperty("Authorization", "Bearer " + config.getGithubToken());
         connection.setRequestProperty("User-Agent", "AthenaBuild");
 
         if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
             throw new IOException("Failed to download file: " + downloadUrl + " - Status: " + connection.getResponseCode());
         }
 
-        File parent = targetFile.getParentFile();
-        if (!parent.exists()) {
-            parent.mkdirs();
+        if (connection.getContentLengthLong() > config.getMaxUploadBytes()) {
+            throw new IOException("The file exceeds the maximum upload size of " + config.getMaxUploadSize() + " MB");
         }
 
-        try (InputStream inputStream = connection.getInputStream();
-             FileOutputStream outputStream = new FileOutputStream(targetFile)) {
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, bytesRead);
+        long start = System.currentTimeMillis();
+        List<String> files;
+        if ("parallel".equals(config.getUploadExtractMode())) {
+            File tempZip = new File(destDir.getParentFile(), destDir.getName() + ".zip");
+            try {
+                try (InputStream body = new LimitedInputStream(connection.getInputStream(), config.getMaxUploadBytes(), "The download")) {
+                    Files.copy(body, tempZip.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                files = archiveExtractor.extract(tempZip, destDir);
+            } finally {
+                tempZip.delete();
             }
+        } else {
+            files = archiveExtractor.extract(connection.getInputStream(), destDir);
         }
+        plugin.getLogger().info("Extracted " + files.size() + " files from " + downloadUrl + " in "
+                + (System.currentTimeMillis() - start) + "ms");
+
+        return findRoot(files, marker);
     }
 
+    /**
+     * Finds the folder containing the shallowest marker file, the world might be nested in folders within the ZIP
+     *
+     * @param files  The extracted file paths
+     * @param marker The name of the file marking the root folder
+     * @return The folder path, an empty string for the archive root, or null if there is no marker
+     */
+    private String findRoot(List<String> files, String marker) {
+        String worldRoot = null;
+        int worldRootDepth = Integer.MAX_VALUE;
+        for (String name : files) {
+            int separator = name.lastIndexOf('/');
+            if (!name.substring(separator + 1).equals(marker)) {
+                continue;
+            }
 
-    private boolean shouldIgnoreFile(String fileName) {
-        for (String ignoredFile : config.getIgnoredFiles()) {
-            if (fileName.toLowerCase().endsWith(ignoredFile.toLowerCase())) {
-                return true;
+            int depth = (int) name.chars().filter(c -> c == '/').count();
+            if (depth < worldRootDepth && depth <= MAX_WORLD_ROOT_DEPTH) {
+                worldRoot = separator < 0 ? "" : name.substring(0, separator);
+                worldRootDepth = depth;
             }
         }
-        return false;
+        return worldRoot;
+    }
+
+    private boolean shouldIgnoreFile(String fileName) {
+        return config.isIgnoredFile(fileName);
     }
 
     private void deleteDirectory(File directory) {
@@ -427,113 +538,6 @@ public final class UploadCommand {
         directory.delete();
     }
 
-    /**
-     * Unzips a file to the specified destination directory
-     *
-     * @param zipFile The ZIP file to extract
-     * @param destDir The destination directory
-     * @throws IOException If an I/O error occurs
-     */
-    private void unzipFile(File zipFile, File destDir) throws IOException {
-        byte[] buffer = new byte[4096];
-        try (ZipInputStream zis = new ZipInputStream(Files.newInputStream(zipFile.toPath()))) {
-            ZipEntry zipEntry = zis.getNextEntry();
-            while (zipEntry != null) {
-                File newFile = newFile(destDir, zipEntry);
-
-                // Create parent directories
-                if (zipEntry.isDirectory()) {
-                    if (!newFile.isDirectory() && !newFile.mkdirs()) {
-                        throw new IOException("Failed to create directory " + newFile);
-                    }
-                } else {
-                    // Create parent directory if it doesn't exist
-                    File parent = newFile.getParentFile();
-                    if (!parent.isDirectory() && !parent.mkdirs()) {
-                        throw new IOException("Failed to create directory " + parent);
-                    }
-
-                    // Write file
-                    try (FileOutputStream fos = new FileOutputStream(newFile)) {
-                        int len;
-                        while ((len = zis.read(buffer)) > 0) {
-                            fos.write(buffer, 0, len);
-                        }
-                    }
-                }
-                zipEntry = zis.getNextEntry();
-            }
-            zis.closeEntry();
-        }
-    }
-
-    /**
-     * Prevents Zip Slip vulnerability by validating the file path
-     *
-     * @param destinationDir The destination directory
-     * @param zipEntry       The ZIP entry
-     * @return The validated file
-     * @throws IOException If the file path is invalid (Zip Slip attempt)
-     */
-    private File newFile(File destinationDir, ZipEntry zipEntry) throws IOException {
-        File destFile = new File(destinationDir, zipEntry.getName());
-
-        String destDirPath = destinationDir.getCanonicalPath();
-        String destFilePath = destFile.getCanonicalPath();
-
-        if (!destFilePath.startsWith(destDirPath + File.separator)) {
-            throw new IOException("Entry is outside of the target dir: " + zipEntry.getName());
-        }
-
-        return destFile;
-    }
-
-    /**
-     * Finds the root directory containing level.dat in the extracted files.
-     * The world might be nested in subdirectories within the ZIP.
-     *
-     * @param directory The directory to search
-     * @return The directory containing level.dat, or null if not found
-     */
-    private File findWorldRoot(File directory) {
-        // Check if current directory contains level.dat
-        File levelDat = new File(directory, "level.dat");
-        if (levelDat.exists() && levelDat.isFile()) {
-            return directory;
-        }
-
-        // Search subdirectories (up to 3 levels deep to avoid infinite search)
-        return findWorldRootRecursive(directory, 0, 3);
-    }
-
-    private File findWorldRootRecursive(File directory, int currentDepth, int maxDepth) {
-        if (currentDepth > maxDepth) {
-            return null;
-        }
-
-        File[] files = directory.listFiles();
-        if (files == null) {
-            return null;
-        }
-
-        for (File file : files) {
-            if (file.isDirectory()) {
-                File levelDat = new File(file, "level.dat");
-                if (levelDat.exists() && levelDat.isFile()) {
-                    return file;
-                }
-
-                // Recursively search subdirectory
-                File result = findWorldRootRecursive(file, currentDepth + 1, maxDepth);
-                if (result != null) {
-                    return result;
-                }
-            }
-        }
-
-        return null;
-    }
-
     /**
      * Cleans up world-specific files that should be deleted before importing a world from an external source.
      * This includes:
@@ -43,7 +43,7 @@ public class WorldCommands {
             worldName = fullWorldPath.substring(fullWorldPath.lastIndexOf(java.io.File.separator) + 1);
         }
 
-        WorldWrapper worldWrapper = new WorldWrapper(plugin, worldName);
+        WorldWrapper worldWrapper = plugin.getWorldRegistry().get(worldName);
         boolean isSuccess = worldWrapper.setSpawnLocation(player.getLocation());
 
         if (isSuccess) {
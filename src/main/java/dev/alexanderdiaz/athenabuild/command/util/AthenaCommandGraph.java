@@ -2,6 +2,7 @@ package dev.alexanderdiaz.athenabuild.command.util;
 
 import dev.alexanderdiaz.athenabuild.AthenaBuild;
 import dev.alexanderdiaz.athenabuild.command.CloseCommand;
+import dev.alexanderdiaz.athenabuild.command.CompactCommand;
 import dev.alexanderdiaz.athenabuild.command.CreateCommand;
 import dev.alexanderdiaz.athenabuild.command.DeleteCommand;
 import dev.alexanderdiaz.athenabuild.command.DownloadCommand;
@@ -40,6 +41,7 @@ public class AthenaCommandGraph extends CommandGraph<AthenaBuild> {
         register(new CloseCommand(plugin));
         register(new DeleteCommand(plugin));
         register(new WorldCommands(plugin));
+        register(new CompactCommand(plugin));
     }
 
     @Override
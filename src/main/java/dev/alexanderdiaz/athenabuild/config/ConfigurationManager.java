@@ -21,16 +21,71 @@ public class ConfigurationManager {
     private String githubRepository;
     @Getter
     private String defaultBranch;
+    @Getter
+    private String githubDownloadMode;
+    // GITHUB -- DOWNLOAD CONFIG
+    @Getter
+    private int downloadThreads;
+    @Getter
+    private int downloadMaxPerHost;
+    @Getter
+    private int downloadRetries;
+    @Getter
+    private int downloadTimeoutSeconds;
+    @Getter
+    private boolean blobCacheEnabled;
+    @Getter
+    private int blobCacheMaxSizeMb;
     // GITHUB -- MAPS CONFIG
     @Getter
     private String mapsRootFolder;
     @Getter
     private List<String> mapCategories;
 
+    // EXPORT CONFIG
+    @Getter
+    private int exportThreads;
+    @Getter
+    private int exportCompressionLevel;
+    @Getter
+    private List<String> exportStoredExtensions;
+    @Getter
+    private boolean exportStripEmptyChunks;
+    @Getter
+    private boolean exportCache;
+    @Getter
+    private int exportHistoryLimit;
+
+    // WORLD CONFIG
+    @Getter
+    private boolean skipSpawnArea;
+    @Getter
+    private int worldPoolSize;
+    @Getter
+    private int idleUnloadMinutes;
+    @Getter
+    private List<String> pinnedWorlds;
+    @Getter
+    private int preloadRadius;
+    @Getter
+    private int preloadBudgetMs;
+
+    // COMPACT CONFIG
+    @Getter
+    private int compactThreads;
+    @Getter
+    private int compactAutoIntervalMinutes;
+
     // UPLOAD CONFIG
     @Getter
     private int maxUploadSize;
     @Getter
+    private int maxUploadEntries;
+    @Getter
+    private int maxCompressionRatio;
+    @Getter
+    private String uploadExtractMode;
+    @Getter
     private List<String> ignoredFiles;
 
     public ConfigurationManager(AthenaBuild plugin) {
@@ -46,6 +101,9 @@ public class ConfigurationManager {
 
         loadGitHubConfig();
         loadUploadConfig();
+        loadExportConfig();
+        loadCompactConfig();
+        loadWorldConfig();
     }
 
     private void loadGitHubConfig() {
@@ -54,8 +112,15 @@ public class ConfigurationManager {
         this.githubOrganization = config.getString("github.organization", "");
         this.githubRepository = config.getString("github.repository", "");
         this.defaultBranch = config.getString("github.default_branch", "main");
+        this.githubDownloadMode = config.getString("github.download_mode", "archive").toLowerCase();
         this.mapsRootFolder = config.getString("github.maps.root_folder", "");
         this.mapCategories = config.getStringList("github.maps.categories");
+        this.downloadThreads = config.getInt("github.download.threads", 8);
+        this.downloadMaxPerHost = config.getInt("github.download.max_per_host", 6);
+        this.downloadRetries = config.getInt("github.download.retries", 3);
+        this.downloadTimeoutSeconds = config.getInt("github.download.timeout_seconds", 300);
+        this.blobCacheEnabled = config.getBoolean("github.download.cache.enabled", true);
+        this.blobCacheMaxSizeMb = config.getInt("github.download.cache.max_size_mb", 2048);
 
         // Add default categories if none configured
         if (mapCategories.isEmpty()) {
@@ -65,6 +130,9 @@ public class ConfigurationManager {
 
     private void loadUploadConfig() {
         this.maxUploadSize = config.getInt("upload.max_size", 500);
+        this.maxUploadEntries = config.getInt("upload.max_entries", 50000);
+        this.maxCompressionRatio = config.getInt("upload.max_compression_ratio", 100);
+        this.uploadExtractMode = config.getString("upload.extract_mode", "stream").toLowerCase();
         this.ignoredFiles = config.getStringList("upload.ignored_files");
 
         // Add default ignored files if none configured
@@ -73,11 +141,65 @@ public class ConfigurationManager {
         }
     }
 
+    private void loadExportConfig() {
+        this.exportThreads = config.getInt("export.threads", 0);
+        this.exportCompressionLevel = config.getInt("export.compression_level", 6);
+        this.exportStoredExtensions = config.getStringList("export.stored_extensions");
+        this.exportStripEmptyChunks = config.getBoolean("export.strip_empty_chunks", false);
+        this.exportCache = config.getBoolean("export.cache", true);
+        this.exportHistoryLimit = config.getInt("export.history_limit", 10);
+
+        // Add default stored extensions if none configured
+        if (exportStoredExtensions.isEmpty()) {
+            exportStoredExtensions = Arrays.asList("mca", "mcr", "png", "jpg", "zip", "gz");
+        }
+    }
+
+    private void loadWorldConfig() {
+        this.skipSpawnArea = config.getBoolean("worlds.skip_spawn_area", false);
+        this.worldPoolSize = config.getInt("worlds.pool_size", 2);
+        this.idleUnloadMinutes = config.getInt("worlds.idle_unload_minutes", 15);
+        this.pinnedWorlds = config.getStringList("worlds.pinned");
+        this.preloadRadius = config.getInt("worlds.preload.radius", 4);
+        this.preloadBudgetMs = config.getInt("worlds.preload.budget_ms", 10);
+    }
+
+    private void loadCompactConfig() {
+        this.compactThreads = config.getInt("compact.threads", 0);
+        this.compactAutoIntervalMinutes = config.getInt("compact.auto_interval_minutes", 0);
+    }
+
+    /**
+     * @return The maximum upload size in bytes
+     */
+    public long getMaxUploadBytes() {
+        return (long) maxUploadSize * 1024 * 1024;
+    }
+
     // VALIDATORS
     public boolean isValidCategory(String category) {
         return mapCategories.contains(category);
     }
 
+    public boolean isIgnoredFile(String fileName) {
+        String lowerName = fileName.toLowerCase();
+        for (String ignoredFile : ignoredFiles) {
+            if (lowerName.endsWith(ignoredFile.toLowerCase())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isIgnoredPath(String relativePath) {
+        for (String segment : relativePath.split("/")) {
+            if (isIgnoredFile(segment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public boolean hasGitHubDefaults() {
         return !githubOrganization.isEmpty() && !githubRepository.isEmpty();
     }
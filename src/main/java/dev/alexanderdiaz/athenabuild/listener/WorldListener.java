@@ -0,0 +1,44 @@
+package dev.alexanderdiaz.athenabuild.listener;
+
+import dev.alexanderdiaz.athenabuild.AthenaBuild;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldInitEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+public class WorldListener implements Listener {
+    private final AthenaBuild plugin;
+
+    public WorldListener(AthenaBuild plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler
+    public void onWorldInit(WorldInitEvent event) {
+        // Called before the server prepares the spawn area, which it skips for worlds that do not keep it loaded
+        if (plugin.getWorldRegistry().skipsSpawnArea(event.getWorld())) {
+            event.getWorld().setKeepSpawnInMemory(false);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(WorldLoadEvent event) {
+        plugin.getWorldRegistry().markLoaded(event.getWorld());
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        // Unloading saves the chunk, which would change a world while it is being snapshotted
+        if (plugin.getWorldRegistry().isFrozen(event.getWorld())) {
+            event.setCancelled(true);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        plugin.getWorldRegistry().markUnloaded(event.getWorld());
+    }
+}
@@ -0,0 +1,226 @@
+package dev.alexanderdiaz.athenabuild.service;
+
+import dev.alexanderdiaz.athenabuild.AthenaBuild;
+import dev.alexanderdiaz.athenabuild.config.ConfigurationManager;
+import dev.alexanderdiaz.athenabuild.util.FileUtils;
+import dev.alexanderdiaz.athenabuild.util.LimitedInputStream;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Extracts uploaded ZIP archives with limits on the number of entries, the total extracted size and
+ * the compression ratio. Archives on disk are checked against their central directory before anything
+ * is written and their entries are inflated in parallel. Streamed archives are checked while reading.
+ * In both cases the actual bytes written are counted, so archives lying about their sizes are rejected.
+ */
+public class ArchiveExtractor {
+    private static final int BUFFER_SIZE = 65536;
+    // Small entries compress extremely well without being dangerous, so the ratio is only checked above this size
+    private static final long RATIO_CHECK_MIN_BYTES = 1024 * 1024;
+
+    private final ConfigurationManager config;
+    private final ExecutorService executor;
+
+    public ArchiveExtractor(AthenaBuild plugin) {
+        this.config = plugin.getConfigManager();
+
+        AtomicInteger threadId = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "AthenaBuild-Extract-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Extracts an archive from disk, inflating independent entries in parallel
+     *
+     * @param zipFile The archive to extract
+     * @param destDir The directory to extract into
+     * @return The paths of all extracted files, relative to destDir
+     * @throws IOException If the archive is invalid, exceeds a limit or could not be written
+     */
+    public List<String> extract(File zipFile, File destDir) throws IOException {
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            List<ZipEntry> files = new ArrayList<>();
+            List<File> directories = new ArrayList<>();
+            int entryCount = 0;
+            long declaredBytes = 0;
+
+            // Reject the archive from its central directory before writing anything
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                checkEntryCount(++entryCount);
+
+                File target = FileUtils.resolveInside(destDir, entry.getName());
+                if (entry.isDirectory()) {
+                    directories.add(target);
+                    continue;
+                }
+
+                if (entry.getSize() >= 0) {
+                    declaredBytes += entry.getSize();
+                    checkTotalSize(declaredBytes);
+                    checkRatio(entry.getName(), entry.getSize(), entry.getCompressedSize());
+                }
+                files.add(entry);
+            }
+
+            for (File directory : directories) {
+                mkdirs(directory);
+            }
+
+            AtomicLong extractedBytes = new AtomicLong();
+            CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+            List<Future<Void>> futures = new ArrayList<>(files.size());
+            for (ZipEntry entry : files) {
+                futures.add(completionService.submit(() -> {
+                    try (InputStream input = zip.getInputStream(entry)) {
+                        long written = write(input, FileUtils.resolveInside(destDir, entry.getName()), entry.getName(), null, extractedBytes);
+                        if (entry.getSize() >= 0 && written != entry.getSize()) {
+                            throw new IOException("Entry " + entry.getName() + " does not match its declared size");
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            try {
+                for (int i = 0; i < futures.size(); i++) {
+                    completionService.take().get();
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ioException ? ioException : new IOException(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while extracting " + zipFile.getName(), e);
+            } finally {
+                for (Future<Void> future : futures) {
+                    future.cancel(true);
+                }
+            }
+
+            List<String> names = new ArrayList<>(files.size());
+            for (ZipEntry entry : files) {
+                names.add(entry.getName());
+            }
+            return names;
+        }
+    }
+
+    /**
+     * Extracts an archive while it is being read, e.g. from a download
+     *
+     * @param input   The archive contents, closed by this method
+     * @param destDir The directory to extract into
+     * @return The paths of all extracted files, relative to destDir
+     * @throws IOException If the archive is invalid, exceeds a limit or could not be written
+     */
+    public List<String> extract(InputStream input, File destDir) throws IOException {
+        List<String> names = new ArrayList<>();
+        AtomicLong extractedBytes = new AtomicLong();
+        int entryCount = 0;
+
+        LimitedInputStream compressed = new LimitedInputStream(
+                new BufferedInputStream(input, BUFFER_SIZE), config.getMaxUploadBytes(), "The archive");
+        try (ZipInputStream zis = new ZipInputStream(compressed)) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                checkEntryCount(++entryCount);
+
+                File target = FileUtils.resolveInside(destDir, entry.getName());
+                if (entry.isDirectory()) {
+                    mkdirs(target);
+                    continue;
+                }
+
+                // The ratio is checked while inflating, a bomb entry is stopped before much of it is written
+                long compressedBefore = compressed.getCount();
+                write(zis, target, entry.getName(), () -> compressed.getCount() - compressedBefore, extractedBytes);
+                names.add(entry.getName());
+            }
+        }
+
+        return names;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @param compressedBytes The compressed bytes of the entry read so far, to check the compression ratio
+     *                        against while writing, or null if the entry was checked beforehand
+     */
+    private long write(InputStream input, File target, String name, LongSupplier compressedBytes,
+                       AtomicLong extractedBytes) throws IOException {
+        mkdirs(target.getParentFile());
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long written = 0;
+        try (OutputStream output = new FileOutputStream(target)) {
+            int len;
+            while ((len = input.read(buffer)) > 0) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IOException("Extraction cancelled");
+                }
+
+                written += len;
+                checkTotalSize(extractedBytes.addAndGet(len));
+                if (compressedBytes != null) {
+                    checkRatio(name, written, compressedBytes.getAsLong());
+                }
+                output.write(buffer, 0, len);
+            }
+        }
+        return written;
+    }
+
+    private void checkEntryCount(int entryCount) throws IOException {
+        if (entryCount > config.getMaxUploadEntries()) {
+            throw new IOException("The archive contains more than " + config.getMaxUploadEntries() + " entries");
+        }
+    }
+
+    private void checkTotalSize(long bytes) throws IOException {
+        if (bytes > config.getMaxUploadBytes()) {
+            throw new IOException("The extracted world exceeds the maximum upload size of " + config.getMaxUploadSize() + " MB");
+        }
+    }
+
+    private void checkRatio(String name, long size, long compressedSize) throws IOException {
+        if (size < RATIO_CHECK_MIN_BYTES) {
+            return;
+        }
+        if (compressedSize <= 0 || size / compressedSize > config.getMaxCompressionRatio()) {
+            throw new IOException("Entry " + name + " exceeds the maximum compression ratio of " + config.getMaxCompressionRatio());
+        }
+    }
+
+    private static void mkdirs(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create directory " + directory);
+        }
+    }
+}
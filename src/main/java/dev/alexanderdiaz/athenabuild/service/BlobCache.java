@@ -0,0 +1,224 @@
+package dev.alexanderdiaz.athenabuild.service;
+
+import dev.alexanderdiaz.athenabuild.AthenaBuild;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store of downloaded files keyed by their git blob SHA. Entries are verified
+ * against their SHA whenever they are read or written and the least recently used entries are
+ * evicted once the cache grows past its configured size.
+ */
+public class BlobCache {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final AthenaBuild plugin;
+    private final File cacheDir;
+    private final long maxSizeBytes;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong totalSize = new AtomicLong();
+
+    private record Entry(long size, long lastAccess) {
+    }
+
+    public BlobCache(AthenaBuild plugin) {
+        this.plugin = plugin;
+        this.cacheDir = new File(plugin.getDataFolder(), "blob_cache");
+        this.maxSizeBytes = plugin.getConfigManager().getBlobCacheMaxSizeMb() * 1024L * 1024L;
+    }
+
+    /**
+     * Scans the cache directory to rebuild the size and access bookkeeping used for eviction
+     */
+    public void load() {
+        if (!cacheDir.isDirectory()) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(cacheDir.toPath())) {
+            paths.filter(Files::isRegularFile).forEach(path -> {
+                String sha = path.getFileName().toString();
+                if (sha.endsWith(".tmp")) {
+                    path.toFile().delete();
+                    return;
+                }
+                File file = path.toFile();
+                record(sha, file.length(), file.lastModified());
+            });
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to scan blob cache", e);
+        }
+
+        plugin.getLogger().info("Blob cache contains " + entries.size() + " files ("
+                + totalSize.get() / (1024 * 1024) + " MB)");
+    }
+
+    /**
+     * Copies a cached blob to the target file. The blob is hashed while it is copied, and a
+     * corrupted entry is evicted and reported as a miss.
+     *
+     * <p>Files are copied rather than hard-linked because region files are rewritten in place
+     * by the server, which would otherwise write straight into the cache.</p>
+     *
+     * @param sha    The git blob SHA
+     * @param target The file to write the contents to
+     * @return true if the blob was cached and copied
+     */
+    public boolean copyTo(String sha, File target) {
+        File cached = fileFor(sha);
+        if (!cached.isFile()) {
+            return false;
+        }
+
+        try {
+            File parent = target.getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Failed to create directory " + parent);
+            }
+
+            String actualSha;
+            try (InputStream input = Files.newInputStream(cached.toPath());
+                 OutputStream output = Files.newOutputStream(target.toPath())) {
+                actualSha = copyAndHash(input, output, cached.length());
+            }
+
+            if (!sha.equals(actualSha)) {
+                plugin.getLogger().warning("Evicting corrupted blob " + sha + " from cache");
+                remove(sha);
+                target.delete();
+                return false;
+            }
+
+            long now = System.currentTimeMillis();
+            cached.setLastModified(now);
+            record(sha, cached.length(), now);
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to read blob " + sha + " from cache", e);
+            target.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Adds a freshly downloaded file to the cache if its contents match the expected SHA
+     *
+     * @param sha    The git blob SHA the file is expected to have
+     * @param source The downloaded file
+     * @throws IOException If the file does not match the SHA
+     */
+    public void store(String sha, File source) throws IOException {
+        File cached = fileFor(sha);
+        if (cached.isFile()) {
+            return;
+        }
+
+        File parent = cached.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory " + parent);
+        }
+
+        File temp = new File(parent, sha + "." + UUID.randomUUID() + ".tmp");
+        try {
+            String actualSha;
+            try (InputStream input = Files.newInputStream(source.toPath());
+                 OutputStream output = Files.newOutputStream(temp.toPath())) {
+                actualSha = copyAndHash(input, output, source.length());
+            }
+
+            if (!sha.equals(actualSha)) {
+                throw new IOException("Downloaded file " + source.getName() + " does not match blob " + sha);
+            }
+
+            try {
+                Files.move(temp.toPath(), cached.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            temp.delete();
+        }
+
+        record(sha, cached.length(), System.currentTimeMillis());
+        evictIfNeeded();
+    }
+
+    private void record(String sha, long size, long lastAccess) {
+        Entry previous = entries.put(sha, new Entry(size, lastAccess));
+        totalSize.addAndGet(size - (previous == null ? 0 : previous.size()));
+    }
+
+    private void remove(String sha) {
+        Entry removed = entries.remove(sha);
+        if (removed != null) {
+            totalSize.addAndGet(-removed.size());
+        }
+        fileFor(sha).delete();
+    }
+
+    private synchronized void evictIfNeeded() {
+        if (totalSize.get() <= maxSizeBytes) {
+            return;
+        }
+
+        List<Map.Entry<String, Entry>> byAge = new ArrayList<>(entries.entrySet());
+        byAge.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess()));
+
+        int evicted = 0;
+        for (Map.Entry<String, Entry> entry : byAge) {
+            if (totalSize.get() <= maxSizeBytes) {
+                break;
+            }
+            remove(entry.getKey());
+            evicted++;
+        }
+
+        plugin.getLogger().info("Evicted " + evicted + " files from blob cache");
+    }
+
+    private File fileFor(String sha) {
+        return new File(cacheDir, sha.substring(0, 2) + File.separator + sha);
+    }
+
+    /**
+     * Copies the stream and computes the git blob SHA ({@code sha1("blob <size>\0" + content)}) on the way
+     */
+    private static String copyAndHash(InputStream input, OutputStream output, long size) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        digest.update(("blob " + size + "\0").getBytes(StandardCharsets.US_ASCII));
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+            output.write(buffer, 0, read);
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
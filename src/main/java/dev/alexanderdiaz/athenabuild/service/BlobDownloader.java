@@ -0,0 +1,272 @@
+package dev.alexanderdiaz.athenabuild.service;
+
+import dev.alexanderdiaz.athenabuild.AthenaBuild;
+import dev.alexanderdiaz.athenabuild.config.ConfigurationManager;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches many files concurrently through a fixed worker pool. Requests to the same host are
+ * additionally limited by a per-host permit count, failed requests are retried with exponential
+ * backoff and every batch shares a single deadline.
+ */
+public class BlobDownloader {
+    private static final long BACKOFF_BASE_MILLIS = 500;
+    private static final long BACKOFF_MAX_MILLIS = 10_000;
+    private static final int CONNECT_TIMEOUT_MILLIS = 15_000;
+    private static final int READ_TIMEOUT_MILLIS = 60_000;
+    private static final int BUFFER_SIZE = 65536;
+
+    private final AthenaBuild plugin;
+    private final GitHubClient client;
+    private final ExecutorService executor;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final int maxPerHost;
+    private final int retries;
+    private final long timeoutMillis;
+
+    public BlobDownloader(AthenaBuild plugin, GitHubClient client) {
+        ConfigurationManager config = plugin.getConfigManager();
+        this.plugin = plugin;
+        this.client = client;
+        this.maxPerHost = Math.max(1, config.getDownloadMaxPerHost());
+        this.retries = Math.max(0, config.getDownloadRetries());
+        this.timeoutMillis = TimeUnit.SECONDS.toMillis(Math.max(1, config.getDownloadTimeoutSeconds()));
+
+        AtomicInteger threadId = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, config.getDownloadThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "AthenaBuild-Download-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * A single file to fetch
+     *
+     * @param url    The URL of the raw file contents
+     * @param target The file to write the contents to
+     */
+    public record Request(String url, File target) {
+    }
+
+    /**
+     * The downloads of one {@link #downloadAll} call. Aborting closes the open connections, which is the
+     * only way to unblock a thread reading from one, and wakes up downloads waiting to retry.
+     */
+    private static class Batch {
+        private final long deadline;
+        private final CountDownLatch aborted = new CountDownLatch(1);
+        private final Set<HttpURLConnection> connections = ConcurrentHashMap.newKeySet();
+
+        private Batch(long deadline) {
+            this.deadline = deadline;
+        }
+
+        private boolean isAborted() {
+            return aborted.getCount() == 0;
+        }
+
+        private void abort() {
+            aborted.countDown();
+            for (HttpURLConnection connection : connections) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Downloads all requests and blocks until they have finished, one of them failed permanently
+     * or the shared timeout elapsed. On failure the outstanding downloads are aborted and this only
+     * returns once none of them writes to its target anymore, so the caller can delete the files.
+     *
+     * @param requests The files to download
+     * @throws IOException If any download failed or the batch timed out
+     */
+    public void downloadAll(List<Request> requests) throws IOException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        Batch batch = new Batch(deadline);
+        CountDownLatch finished = new CountDownLatch(requests.size());
+
+        CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<Void>> futures = new ArrayList<>(requests.size());
+        for (Request request : requests) {
+            futures.add(completionService.submit(() -> {
+                try {
+                    // Downloads that had not started when the batch was aborted finish right away
+                    if (!batch.isAborted()) {
+                        download(request, batch);
+                    }
+                    return null;
+                } finally {
+                    finished.countDown();
+                }
+            }));
+        }
+
+        boolean succeeded = false;
+        try {
+            // Take results in completion order so the first failure aborts the batch immediately
+            for (int i = 0; i < futures.size(); i++) {
+                long remaining = deadline - System.currentTimeMillis();
+                Future<Void> completed = completionService.poll(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+                if (completed == null) {
+                    throw new TimeoutException();
+                }
+                completed.get();
+            }
+            succeeded = true;
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out after " + TimeUnit.MILLISECONDS.toSeconds(timeoutMillis)
+                    + "s downloading " + requests.size() + " files");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ioException ? ioException : new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading files", e);
+        } finally {
+            if (!succeeded) {
+                batch.abort();
+                awaitAborted(finished);
+            }
+        }
+    }
+
+    private void awaitAborted(CountDownLatch finished) {
+        try {
+            if (!finished.await(CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                plugin.getLogger().warning(finished.getCount() + " aborted downloads are still running");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void download(Request request, Batch batch) throws IOException, InterruptedException {
+        Semaphore permits = hostPermits.computeIfAbsent(new URL(request.url()).getHost(),
+                host -> new Semaphore(maxPerHost));
+
+        for (int attempt = 0; ; attempt++) {
+            long retryAfterMillis;
+
+            permits.acquire();
+            try {
+                retryAfterMillis = tryDownload(request, batch);
+                if (retryAfterMillis < 0) {
+                    return;
+                }
+            } catch (IOException e) {
+                if (e instanceof PermanentFailureException || attempt >= retries) {
+                    throw e;
+                }
+                retryAfterMillis = 0;
+            } finally {
+                permits.release();
+            }
+
+            if (attempt >= retries) {
+                throw new IOException("Giving up on " + request.url() + " after " + (attempt + 1) + " attempts");
+            }
+
+            long backoff = Math.min(BACKOFF_MAX_MILLIS, BACKOFF_BASE_MILLIS << attempt);
+            long sleep = Math.max(retryAfterMillis, backoff + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+            if (System.currentTimeMillis() + sleep >= batch.deadline) {
+                throw new IOException("Not enough time left to retry " + request.url());
+            }
+
+            plugin.getLogger().fine("Retrying " + request.url() + " in " + sleep + "ms");
+            if (batch.aborted.await(sleep, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Download of " + request.url() + " was aborted");
+            }
+        }
+    }
+
+    /**
+     * @return -1 on success, otherwise the number of milliseconds the server asked us to wait before retrying
+     */
+    private long tryDownload(Request request, Batch batch) throws IOException {
+        HttpURLConnection connection = client.open(request.url(), GitHubClient.ACCEPT_RAW);
+        int remaining = (int) Math.max(1, Math.min(Integer.MAX_VALUE, batch.deadline - System.currentTimeMillis()));
+        connection.setConnectTimeout(Math.min(CONNECT_TIMEOUT_MILLIS, remaining));
+        connection.setReadTimeout(Math.min(READ_TIMEOUT_MILLIS, remaining));
+
+        batch.connections.add(connection);
+        try {
+            // Registered after the batch was aborted, so abort() may have missed this connection
+            if (batch.isAborted()) {
+                throw new IOException("Download of " + request.url() + " was aborted");
+            }
+            return readResponse(request, connection, batch);
+        } finally {
+            batch.connections.remove(connection);
+            connection.disconnect();
+        }
+    }
+
+    private long readResponse(Request request, HttpURLConnection connection, Batch batch) throws IOException {
+
+        int responseCode = connection.getResponseCode();
+        if (responseCode == 429 || responseCode == HttpURLConnection.HTTP_FORBIDDEN && connection.getHeaderField("Retry-After") != null) {
+            return TimeUnit.SECONDS.toMillis(connection.getHeaderFieldLong("Retry-After", 1));
+        }
+        if (responseCode >= 500) {
+            return 0;
+        }
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            // Client errors will not fix themselves, so fail the whole batch right away
+            throw new PermanentFailureException("Failed to download file: " + request.url() + " - Status: " + responseCode);
+        }
+
+        File parent = request.target().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory " + parent);
+        }
+
+        // The read timeout only limits single reads, the deadline is checked between them
+        try (InputStream inputStream = connection.getInputStream();
+             OutputStream outputStream = Files.newOutputStream(request.target().toPath())) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                if (batch.isAborted() || System.currentTimeMillis() > batch.deadline) {
+                    throw new IOException("Download of " + request.url() + " was aborted");
+                }
+                outputStream.write(buffer, 0, read);
+            }
+        }
+        return -1;
+    }
+
+    private static class PermanentFailureException extends IOException {
+        PermanentFailureException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package dev.alexanderdiaz.athenabuild.service;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A box of overworld chunks to export instead of the whole world. Only level.dat and the region files
+ * intersecting the box are exported, and of those only the chunks inside the box.
+ *
+ * @param minChunkX The smallest chunk x coordinate, inclusive
+ * @param minChunkZ The smallest chunk z coordinate, inclusive
+ * @param maxChunkX The largest chunk x coordinate, inclusive
+ * @param maxChunkZ The largest chunk z coordinate, inclusive
+ */
+public record ExportArea(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+    private static final Pattern REGION_PATH = Pattern.compile("region/r\\.(-?\\d+)\\.(-?\\d+)\\.mca");
+
+    /**
+     * Parses two opposite block corners
+     *
+     * @param box The corners as {@code x1,z1,x2,z2} in block coordinates
+     * @return The chunks covering the box
+     * @throws IllegalArgumentException If the box is not four integers
+     */
+    public static ExportArea parse(String box) {
+        String[] parts = box.split(",");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Expected x1,z1,x2,z2 but got " + box);
+        }
+
+        int[] coordinates = new int[4];
+        for (int i = 0; i < 4; i++) {
+            try {
+                coordinates[i] = Integer.parseInt(parts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a block coordinate: " + parts[i].trim());
+            }
+        }
+
+        return new ExportArea(
+                Math.min(coordinates[0], coordinates[2]) >> 4,
+                Math.min(coordinates[1], coordinates[3]) >> 4,
+                Math.max(coordinates[0], coordinates[2]) >> 4,
+                Math.max(coordinates[1], coordinates[3]) >> 4);
+    }
+
+    /**
+     * @param path A file path relative to the world folder, using {@code /} as separator
+     * @return true if the file belongs to the export
+     */
+    public boolean includes(String path) {
+        if (path.equals("level.dat")) {
+            return true;
+        }
+
+        Matcher matcher = REGION_PATH.matcher(path);
+        if (!matcher.matches()) {
+            return false;
+        }
+        int regionX = Integer.parseInt(matcher.group(1));
+        int regionZ = Integer.parseInt(matcher.group(2));
+        return regionX >= minChunkX >> 5 && regionX <= maxChunkX >> 5
+                && regionZ >= minChunkZ >> 5 && regionZ <= maxChunkZ >> 5;
+    }
+
+    /**
+     * @param path  The path of a region file relative to the world folder, see {@link #includes}
+     * @param index The index of a chunk inside the region file
+     * @return true if the chunk lies inside the box
+     */
+    public boolean containsChunk(String path, int index) {
+        Matcher matcher = REGION_PATH.matcher(path);
+        if (!matcher.matches()) {
+            return true;
+        }
+        int chunkX = Integer.parseInt(matcher.group(1)) * 32 + index % 32;
+        int chunkZ = Integer.parseInt(matcher.group(2)) * 32 + index / 32;
+        return chunkX >= minChunkX && chunkX <= maxChunkX
+                && chunkZ >= minChunkZ && chunkZ <= maxChunkZ;
+    }
+
+    @Override
+    public String toString() {
+        return "chunks " + minChunkX + "," + minChunkZ + " to " + maxChunkX + "," + maxChunkZ;
+    }
+}
@@ -0,0 +1,159 @@
+package dev.alexanderdiaz.athenabuild.service;
+
+import dev.alexanderdiaz.athenabuild.AthenaBuild;
+import dev.alexanderdiaz.athenabuild.util.RegionFile;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Remembers what the last exports of every world contained, so a later export can be made as a patch
+ * against one of them. Files are remembered by their SHA-1, region files chunk by chunk. Only the most
+ * recent exports of each world are kept.
+ */
+public class ExportHistory {
+    private static final Pattern EXPORT_ID = Pattern.compile("[0-9a-f]+");
+
+    private final AthenaBuild plugin;
+    private final File historyDirectory;
+    private final int limit;
+
+    /**
+     * What an export contained, as SHA-1 hashes
+     *
+     * @param files   Hashes of all files except region files, by path relative to the world folder
+     * @param regions Hashes of the chunks of every region file, null for missing chunks
+     */
+    public record State(Map<String, String> files, Map<String, String[]> regions) {
+        public static State create() {
+            return new State(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        }
+    }
+
+    public ExportHistory(AthenaBuild plugin, File historyDirectory) {
+        this.plugin = plugin;
+        this.historyDirectory = historyDirectory;
+        this.limit = Math.max(1, plugin.getConfigManager().getExportHistoryLimit());
+    }
+
+    /**
+     * @return The state of an earlier export, or null if the export is unknown or no longer kept
+     */
+    public State load(String worldName, String exportId) throws IOException {
+        if (!EXPORT_ID.matcher(exportId).matches()) {
+            return null;
+        }
+        File file = getFile(worldName, exportId);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            JSONObject root = (JSONObject) new JSONParser().parse(reader);
+            State state = State.create();
+
+            JSONObject files = (JSONObject) root.get("files");
+            for (Object path : files.keySet()) {
+                state.files().put((String) path, (String) files.get(path));
+            }
+
+            JSONObject regions = (JSONObject) root.get("regions");
+            for (Object path : regions.keySet()) {
+                JSONObject chunks = (JSONObject) regions.get(path);
+                String[] hashes = new String[RegionFile.CHUNK_COUNT];
+                for (Object index : chunks.keySet()) {
+                    hashes[Integer.parseInt((String) index)] = (String) chunks.get(index);
+                }
+                state.regions().put((String) path, hashes);
+            }
+            return state;
+        } catch (ParseException | ClassCastException | NullPointerException | IndexOutOfBoundsException | NumberFormatException e) {
+            throw new IOException("Invalid export history " + file, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void save(String worldName, String exportId, State state) throws IOException {
+        JSONObject files = new JSONObject();
+        files.putAll(state.files());
+
+        // Only chunks that exist are written, void worlds have few of them
+        JSONObject regions = new JSONObject();
+        state.regions().forEach((path, hashes) -> {
+            JSONObject chunks = new JSONObject();
+            for (int index = 0; index < hashes.length; index++) {
+                if (hashes[index] != null) {
+                    chunks.put(String.valueOf(index), hashes[index]);
+                }
+            }
+            regions.put(path, chunks);
+        });
+
+        JSONObject root = new JSONObject();
+        root.put("files", files);
+        root.put("regions", regions);
+
+        File file = getFile(worldName, exportId);
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        file.getParentFile().mkdirs();
+        try (Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(root.toJSONString());
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        prune(worldName);
+    }
+
+    /**
+     * Marks an export as handed out again, e.g. when a cached archive was reused, so it is pruned last
+     */
+    public void touch(String worldName, String exportId) {
+        File file = getFile(worldName, exportId);
+        if (!file.isFile()) {
+            plugin.getLogger().warning("No export history for " + worldName + " export " + exportId
+                    + ", it cannot be used as a patch base");
+            return;
+        }
+
+        if (!file.setLastModified(System.currentTimeMillis())) {
+            plugin.getLogger().warning("Failed to touch export " + exportId + " of " + worldName);
+        }
+    }
+
+    public void forget(String worldName) {
+        File[] files = new File(historyDirectory, worldName).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        new File(historyDirectory, worldName).delete();
+    }
+
+    private void prune(String worldName) {
+        File[] files = new File(historyDirectory, worldName).listFiles((dir, name) -> name.endsWith(".json"));
+        if (files == null || files.length <= limit) {
+            return;
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+        for (int i = limit; i < files.length; i++) {
+            files[i].delete();
+        }
+    }
+
+    private File getFile(String worldName, String exportId) {
+        return new File(new File(historyDirectory, worldName), exportId + ".json");
+    }
+}
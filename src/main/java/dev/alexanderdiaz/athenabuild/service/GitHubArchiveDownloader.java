@@ -0,0 +1,95 @@
+package dev.alexanderdiaz.athenabuild.service;
+
+import dev.alexanderdiaz.athenabuild.AthenaBuild;
+import dev.alexanderdiaz.athenabuild.config.ConfigurationManager;
+import dev.alexanderdiaz.athenabuild.util.FileUtils;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Downloads a single map folder by streaming the repository zipball once instead of
+ * issuing one Contents API call per directory and one request per file.
+ */
+public class GitHubArchiveDownloader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final AthenaBuild plugin;
+    private final ConfigurationManager config;
+    private final GitHubClient client;
+
+    public GitHubArchiveDownloader(AthenaBuild plugin, GitHubClient client) {
+        this.plugin = plugin;
+        this.config = plugin.getConfigManager();
+        this.client = client;
+    }
+
+    /**
+     * Streams the zipball of the default branch and extracts only the entries below the given folder.
+     * Entries in a git archive are written in tree order, so reading stops as soon as the stream
+     * leaves the requested folder and the rest of the repository is never downloaded.
+     *
+     * @param folderPath The folder inside the repository, e.g. {@code DTM/Quintus}
+     * @param targetDir  The directory to extract the folder contents into
+     * @return The number of files extracted
+     * @throws IOException If the download failed or the folder does not exist
+     */
+    public int downloadFolder(String folderPath, File targetDir) throws IOException {
+        String prefix = folderPath.endsWith("/") ? folderPath : folderPath + "/";
+        String archiveUrl = client.repoUrl("zipball/" + config.getDefaultBranch());
+
+        int extracted = 0;
+        boolean insideFolder = false;
+
+        try (InputStream body = client.openStream(archiveUrl, GitHubClient.ACCEPT_JSON);
+             ZipInputStream zis = new ZipInputStream(new BufferedInputStream(body, BUFFER_SIZE))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                // Every entry is nested in a "{owner}-{repo}-{sha}/" directory
+                String name = entry.getName();
+                int firstSlash = name.indexOf('/');
+                String repoPath = firstSlash < 0 ? "" : name.substring(firstSlash + 1);
+
+                if (!repoPath.startsWith(prefix)) {
+                    if (insideFolder) {
+                        break;
+                    }
+                    continue;
+                }
+                insideFolder = true;
+
+                String relativePath = repoPath.substring(prefix.length());
+                if (relativePath.isEmpty() || config.isIgnoredPath(relativePath)) {
+                    continue;
+                }
+
+                File targetFile = FileUtils.resolveInside(targetDir, relativePath);
+                if (entry.isDirectory()) {
+                    if (!targetFile.isDirectory() && !targetFile.mkdirs()) {
+                        throw new IOException("Failed to create directory " + targetFile);
+                    }
+                    continue;
+                }
+
+                File parent = targetFile.getParentFile();
+                if (!parent.isDirectory() && !parent.mkdirs()) {
+                    throw new IOException("Failed to create directory " + parent);
+                }
+                Files.copy(zis, targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                extracted++;
+            }
+        }
+
+        if (!insideFolder) {
+            throw new IOException("Folder not found in repository archive: " + folderPath);
+        }
+
+        plugin.getLogger().info("Extracted " + extracted + " files for " + folderPath + " from repository archive");
+        return extracted;
+    }
+}
@@ -0,0 +1,156 @@
+package dev.alexanderdiaz.athenabuild.service;
+
+import dev.alexanderdiaz.athenabuild.config.ConfigurationManager;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Thin wrapper around {@link HttpURLConnection} for authenticated calls to the configured GitHub repository.
+ */
+public class GitHubClient {
+    public static final String ACCEPT_JSON = "application/vnd.github+json";
+    public static final String ACCEPT_RAW = "application/vnd.github.raw";
+
+    private final ConfigurationManager config;
+
+    public GitHubClient(ConfigurationManager config) {
+        this.config = config;
+    }
+
+    /**
+     * Builds a URL below {@code /repos/{owner}/{repo}/} of the configured repository
+     *
+     * @param path The path relative to the repository endpoint, e.g. {@code zipball/main}
+     * @return The absolute API URL
+     */
+    public String repoUrl(String path) {
+        return String.format("%s/repos/%s/%s/%s",
+                config.getGithubApiUrl(),
+                config.getGithubOrganization(),
+                config.getGithubRepository(),
+                path);
+    }
+
+    /**
+     * Builds the URL of the GraphQL endpoint belonging to the configured REST API URL
+     *
+     * @return The GraphQL endpoint, {@code /graphql} on github.com and {@code /api/graphql} on GitHub Enterprise
+     */
+    public String graphqlUrl() {
+        String apiUrl = config.getGithubApiUrl();
+        if (apiUrl.endsWith("/api/v3")) {
+            return apiUrl.substring(0, apiUrl.length() - "v3".length()) + "graphql";
+        }
+        return apiUrl + "/graphql";
+    }
+
+    /**
+     * Opens an authenticated GET connection. The response code is not checked.
+     *
+     * @param urlString The URL to request
+     * @param accept    The value of the Accept header
+     * @return The opened connection
+     * @throws IOException If the connection could not be opened
+     */
+    public HttpURLConnection open(String urlString, String accept) throws IOException {
+        URL url = new URL(urlString);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("GET");
+        connection.setRequestProperty("Authorization", "Bearer " + config.getGithubToken());
+        connection.setRequestProperty("Accept", accept);
+        connection.setRequestProperty("X-GitHub-Api-Version", "2022-11-28");
+        connection.setRequestProperty("User-Agent", "AthenaBuild");
+        return connection;
+    }
+
+    /**
+     * Opens an authenticated GET connection and returns its body stream
+     *
+     * @param urlString The URL to request
+     * @param accept    The value of the Accept header
+     * @return The response body, which the caller must close
+     * @throws IOException If the request failed or did not return 200
+     */
+    public InputStream openStream(String urlString, String accept) throws IOException {
+        HttpURLConnection connection = open(urlString, accept);
+        checkResponse(connection);
+        return connection.getInputStream();
+    }
+
+    /**
+     * Fetches a JSON document as a string
+     *
+     * @param urlString The URL to request
+     * @return The response body
+     * @throws IOException If the request failed or did not return 200
+     */
+    public String fetchString(String urlString) throws IOException {
+        HttpURLConnection connection = open(urlString, ACCEPT_JSON);
+        checkResponse(connection);
+        return readBody(connection.getInputStream());
+    }
+
+    /**
+     * Sends an authenticated POST with a JSON body
+     *
+     * @param urlString The URL to post to
+     * @param body      The JSON request body
+     * @return The response body
+     * @throws IOException If the request failed or did not return 200
+     */
+    public String postJson(String urlString, String body) throws IOException {
+        HttpURLConnection connection = open(urlString, ACCEPT_JSON);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setDoOutput(true);
+
+        byte[] payload = body.getBytes(StandardCharsets.UTF_8);
+        connection.setFixedLengthStreamingMode(payload.length);
+        try (OutputStream output = connection.getOutputStream()) {
+            output.write(payload);
+        }
+
+        checkResponse(connection);
+        return readBody(connection.getInputStream());
+    }
+
+    /**
+     * Throws an {@link IOException} carrying the error body if the response code is not 200
+     *
+     * @param connection The connection to check
+     * @throws IOException If the response code is not 200
+     */
+    public void checkResponse(HttpURLConnection connection) throws IOException {
+        int responseCode = connection.getResponseCode();
+        if (responseCode == HttpURLConnection.HTTP_OK) {
+            return;
+        }
+
+        String errorMessage = "";
+        InputStream errorStream = connection.getErrorStream();
+        if (errorStream != null) {
+            errorMessage = readBody(errorStream);
+        }
+        throw new IOException(String.format("Failed to fetch from GitHub: %d - %s. Response: %s",
+                responseCode,
+                connection.getResponseMessage(),
+                errorMessage));
+    }
+
+    private String readBody(InputStream stream) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            StringBuilder response = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                response.append(line);
+            }
+            return response.toString();
+        }
+    }
+}
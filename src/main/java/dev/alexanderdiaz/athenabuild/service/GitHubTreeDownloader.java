@@ -0,0 +1,148 @@
+package dev.alexanderdiaz.athenabuild.service;
+
+import dev.alexanderdiaz.athenabuild.AthenaBuild;
+import dev.alexanderdiaz.athenabuild.config.ConfigurationManager;
+import dev.alexanderdiaz.athenabuild.util.FileUtils;
+import java.io.File;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Downloads a map folder by listing it with one recursive Git Trees call and then fetching
+ * all blobs that are not in the {@link BlobCache} in parallel through the {@link BlobDownloader}.
+ */
+public class GitHubTreeDownloader {
+    private final AthenaBuild plugin;
+    private final ConfigurationManager config;
+    private final GitHubClient client;
+    private final BlobDownloader blobDownloader;
+    private final BlobCache blobCache;
+
+    /**
+     * @param blobCache The cache to reuse unchanged files from, or null to always download
+     */
+    public GitHubTreeDownloader(AthenaBuild plugin, GitHubClient client, BlobDownloader blobDownloader, BlobCache blobCache) {
+        this.plugin = plugin;
+        this.config = plugin.getConfigManager();
+        this.client = client;
+        this.blobDownloader = blobDownloader;
+        this.blobCache = blobCache;
+    }
+
+    /**
+     * A file inside a git tree
+     *
+     * @param path The path relative to the listed folder
+     * @param sha  The git blob SHA of the file contents
+     * @param size The size of the blob in bytes
+     */
+    public record TreeFile(String path, String sha, long size) {
+    }
+
+    /**
+     * Lists every file below a tree with a single request
+     *
+     * @param treeish A tree SHA or a {@code <ref>:<path>} expression, e.g. {@code main:DTM/Quintus}
+     * @return The non-ignored files of the tree
+     * @throws IOException If the request failed or the listing was truncated by GitHub
+     */
+    public List<TreeFile> listFiles(String treeish) throws IOException {
+        String treeUrl = client.repoUrl("git/trees/" + encodePath(treeish) + "?recursive=1");
+        String response = client.fetchString(treeUrl);
+
+        JSONObject tree;
+        try {
+            tree = (JSONObject) new JSONParser().parse(response);
+        } catch (ParseException e) {
+            throw new IOException("Failed to parse tree response for " + treeish, e);
+        }
+
+        if (Boolean.TRUE.equals(tree.get("truncated"))) {
+            throw new IOException("Tree listing for " + treeish + " was truncated, use download_mode: archive");
+        }
+
+        List<TreeFile> files = new ArrayList<>();
+        for (Object item : (JSONArray) tree.get("tree")) {
+            JSONObject entry = (JSONObject) item;
+            String path = (String) entry.get("path");
+
+            if (!"blob".equals(entry.get("type")) || config.isIgnoredPath(path)) {
+                continue;
+            }
+
+            Number size = (Number) entry.get("size");
+            files.add(new TreeFile(path, (String) entry.get("sha"), size == null ? 0 : size.longValue()));
+        }
+        return files;
+    }
+
+    /**
+     * Downloads every file below a folder of the default branch into the target directory
+     *
+     * @param folderPath The folder inside the repository, e.g. {@code DTM/Quintus}
+     * @param targetDir  The directory to write the folder contents into
+     * @return The number of files fetched over the network
+     * @throws IOException If listing or any download failed
+     */
+    public int downloadFolder(String folderPath, File targetDir) throws IOException {
+        return downloadTree(config.getDefaultBranch() + ":" + folderPath, targetDir);
+    }
+
+    /**
+     * Downloads every file below a tree into the target directory
+     *
+     * @param treeish   A tree SHA or a {@code <ref>:<path>} expression
+     * @param targetDir The directory to write the tree contents into
+     * @return The number of files fetched over the network
+     * @throws IOException If listing or any download failed
+     */
+    public int downloadTree(String treeish, File targetDir) throws IOException {
+        long start = System.currentTimeMillis();
+        List<TreeFile> files = listFiles(treeish);
+
+        List<TreeFile> misses = new ArrayList<>();
+        List<BlobDownloader.Request> requests = new ArrayList<>();
+        for (TreeFile file : files) {
+            File target = FileUtils.resolveInside(targetDir, file.path());
+            if (blobCache != null && blobCache.copyTo(file.sha(), target)) {
+                continue;
+            }
+
+            misses.add(file);
+            requests.add(new BlobDownloader.Request(client.repoUrl("git/blobs/" + file.sha()), target));
+        }
+
+        blobDownloader.downloadAll(requests);
+
+        if (blobCache != null) {
+            for (int i = 0; i < misses.size(); i++) {
+                blobCache.store(misses.get(i).sha(), requests.get(i).target());
+            }
+        }
+
+        plugin.getLogger().info("Fetched " + files.size() + " files for " + treeish + " ("
+                + (files.size() - misses.size()) + " from cache, " + misses.size() + " downloaded) in "
+                + (System.currentTimeMillis() - start) + "ms");
+        return misses.size();
+    }
+
+    private String encodePath(String path) {
+        StringBuilder encoded = new StringBuilder();
+        for (String segment : path.split("/")) {
+            if (encoded.length() > 0) {
+                encoded.append('/');
+            }
+            encoded.append(URLEncoder.encode(segment, StandardCharsets.UTF_8)
+                    .replace("+", "%20")
+                    .replace("%3A", ":"));
+        }
+        return encoded.toString();
+    }
+}
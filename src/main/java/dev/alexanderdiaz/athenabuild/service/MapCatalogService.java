@@ -0,0 +1,282 @@
+package dev.alexanderdiaz.athenabuild.service;
+
+import dev.alexanderdiaz.athenabuild.AthenaBuild;
+import dev.alexanderdiaz.athenabuild.config.ConfigurationManager;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import org.bukkit.Bukkit;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Holds the whole maps tree of the repository (root → category → map) as one immutable snapshot.
+ * A refresh costs a conditional request for the branch head, which is free while nothing has been
+ * pushed, plus a single GraphQL query for the two tree levels when the head moved. The snapshot is
+ * swapped atomically and persisted so it is available immediately after a restart.
+ */
+public class MapCatalogService {
+    private static final long FAILURE_RETRY_MILLIS = 30000; // 30 seconds
+    private static final String TREE_QUERY = "query($owner: String!, $name: String!, $expression: String!) {"
+            + " repository(owner: $owner, name: $name) { object(expression: $expression) { ... on Tree {"
+            + " entries { name type oid object { ... on Tree { entries { name type oid } } } } } } } }";
+
+    private final AthenaBuild plugin;
+    private final ConfigurationManager config;
+    private final GitHubClient client;
+    private final File cacheFile;
+    private final long cacheExpiry;
+    private final AtomicReference<MapCatalog> catalog = new AtomicReference<>(MapCatalog.EMPTY);
+    private final AtomicReference<CompletableFuture<MapCatalog>> inFlightRefresh = new AtomicReference<>();
+
+    /**
+     * An immutable snapshot of the maps tree
+     *
+     * @param commitSha  The commit the snapshot was built from
+     * @param etag       The ETag of the branch ref response the commit was read from
+     * @param fetchedAt  When the snapshot was last confirmed to be up to date
+     * @param categories Category name → map name → git tree SHA of the map folder
+     */
+    public record MapCatalog(String commitSha, String etag, long fetchedAt,
+                             Map<String, Map<String, String>> categories) {
+        public static final MapCatalog EMPTY = new MapCatalog("", "", 0, Collections.emptyMap());
+
+        public List<String> getMaps(String category) {
+            Map<String, String> maps = categories.get(category);
+            return maps == null ? Collections.emptyList() : List.copyOf(maps.keySet());
+        }
+
+        /**
+         * @return The git tree SHA of the map folder, or null if the map is not in the catalog
+         */
+        public String getTreeSha(String category, String mapName) {
+            Map<String, String> maps = categories.get(category);
+            return maps == null ? null : maps.get(mapName);
+        }
+
+        public boolean isEmpty() {
+            return commitSha.isEmpty();
+        }
+
+        private MapCatalog withFetchedAt(String etag, long fetchedAt) {
+            return new MapCatalog(commitSha, etag, fetchedAt, categories);
+        }
+    }
+
+    public MapCatalogService(AthenaBuild plugin, GitHubClient client) {
+        this.plugin = plugin;
+        this.config = plugin.getConfigManager();
+        this.client = client;
+        this.cacheFile = new File(plugin.getDataFolder(), "map_catalog.json");
+        this.cacheExpiry = 900000; // 15 minutes in milliseconds
+    }
+
+    /**
+     * @return The current snapshot, never null
+     */
+    public MapCatalog getCatalog() {
+        return catalog.get();
+    }
+
+    /**
+     * Starts a background refresh if the current snapshot is older than the cache expiry
+     */
+    public void refreshIfStale() {
+        if (System.currentTimeMillis() - catalog.get().fetchedAt() > cacheExpiry) {
+            refresh();
+        }
+    }
+
+    /**
+     * Refreshes the catalog in the background. Concurrent calls share a single refresh.
+     *
+     * @return A future completed with the up-to-date catalog
+     */
+    public CompletableFuture<MapCatalog> refresh() {
+        CompletableFuture<MapCatalog> future = new CompletableFuture<>();
+        if (!inFlightRefresh.compareAndSet(null, future)) {
+            CompletableFuture<MapCatalog> existing = inFlightRefresh.get();
+            if (existing != null) {
+                return existing;
+            }
+            return refresh();
+        }
+
+        if (!config.isGitHubConfigured()) {
+            inFlightRefresh.set(null);
+            future.complete(catalog.get());
+            return future;
+        }
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            MapCatalog previous = catalog.get();
+            try {
+                MapCatalog fresh = fetchCatalog(previous);
+                catalog.set(fresh);
+                if (!fresh.commitSha().equals(previous.commitSha())) {
+                    plugin.getLogger().info("Map catalog updated to commit " + fresh.commitSha());
+                }
+                save(fresh);
+                future.complete(fresh);
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to refresh map catalog: " + e.getMessage());
+
+                // Keep serving the last snapshot, but try again sooner than a full expiry
+                long retryAt = System.currentTimeMillis() - cacheExpiry + FAILURE_RETRY_MILLIS;
+                catalog.set(previous.withFetchedAt(previous.etag(), retryAt));
+                future.completeExceptionally(e);
+            } finally {
+                inFlightRefresh.set(null);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Loads the snapshot persisted by a previous run
+     */
+    public void load() {
+        if (!cacheFile.isFile()) {
+            return;
+        }
+
+        try (Reader reader = Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+            JSONObject root = (JSONObject) new JSONParser().parse(reader);
+            JSONObject categories = (JSONObject) root.get("categories");
+
+            Map<String, Map<String, String>> parsed = new TreeMap<>();
+            for (Object category : categories.keySet()) {
+                JSONObject maps = (JSONObject) categories.get(category);
+                Map<String, String> parsedMaps = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                for (Object map : maps.keySet()) {
+                    parsedMaps.put((String) map, (String) maps.get(map));
+                }
+                parsed.put((String) category, Collections.unmodifiableMap(parsedMaps));
+            }
+
+            Number fetchedAt = (Number) root.get("fetched_at");
+            catalog.set(new MapCatalog(
+                    Objects.toString(root.get("commit"), ""),
+                    Objects.toString(root.get("etag"), ""),
+                    fetchedAt == null ? 0 : fetchedAt.longValue(),
+                    Collections.unmodifiableMap(parsed)));
+            plugin.getLogger().info("Loaded map catalog with " + parsed.size() + " categories");
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to load map catalog, it will be fetched again", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized void save(MapCatalog snapshot) {
+        JSONObject categories = new JSONObject();
+        snapshot.categories().forEach((category, maps) -> {
+            JSONObject jsonMaps = new JSONObject();
+            jsonMaps.putAll(maps);
+            categories.put(category, jsonMaps);
+        });
+
+        JSONObject root = new JSONObject();
+        root.put("commit", snapshot.commitSha());
+        root.put("etag", snapshot.etag());
+        root.put("fetched_at", snapshot.fetchedAt());
+        root.put("categories", categories);
+
+        File tempFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+        try {
+            cacheFile.getParentFile().mkdirs();
+            try (Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+                writer.write(root.toJSONString());
+            }
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to save map catalog", e);
+        }
+    }
+
+    private MapCatalog fetchCatalog(MapCatalog previous) throws IOException, ParseException {
+        // A conditional request for the branch head does not count against the rate limit when it returns 304
+        HttpURLConnection connection = client.open(
+                client.repoUrl("git/ref/heads/" + config.getDefaultBranch()), GitHubClient.ACCEPT_JSON);
+        if (!previous.isEmpty() && !previous.etag().isEmpty()) {
+            connection.setRequestProperty("If-None-Match", previous.etag());
+        }
+
+        if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            return previous.withFetchedAt(previous.etag(), System.currentTimeMillis());
+        }
+        client.checkResponse(connection);
+
+        String etag = connection.getHeaderField("ETag");
+        JSONObject ref;
+        try (InputStream body = connection.getInputStream()) {
+            ref = (JSONObject) new JSONParser().parse(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        String commitSha = (String) ((JSONObject) ref.get("object")).get("sha");
+
+        if (commitSha.equals(previous.commitSha())) {
+            return previous.withFetchedAt(etag == null ? "" : etag, System.currentTimeMillis());
+        }
+
+        return new MapCatalog(commitSha, etag == null ? "" : etag, System.currentTimeMillis(), fetchTree(commitSha));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Map<String, String>> fetchTree(String commitSha) throws IOException, ParseException {
+        JSONObject variables = new JSONObject();
+        variables.put("owner", config.getGithubOrganization());
+        variables.put("name", config.getGithubRepository());
+        variables.put("expression", commitSha + ":" + config.getMapsRootFolder());
+
+        JSONObject request = new JSONObject();
+        request.put("query", TREE_QUERY);
+        request.put("variables", variables);
+
+        JSONObject response = (JSONObject) new JSONParser().parse(client.postJson(client.graphqlUrl(), request.toJSONString()));
+        if (response.get("errors") != null) {
+            throw new IOException("GraphQL query failed: " + response.get("errors"));
+        }
+
+        JSONObject repository = (JSONObject) ((JSONObject) response.get("data")).get("repository");
+        JSONObject root = repository == null ? null : (JSONObject) repository.get("object");
+        if (root == null || root.get("entries") == null) {
+            throw new IOException("Maps root folder not found: " + config.getMapsRootFolder());
+        }
+
+        Map<String, Map<String, String>> categories = new TreeMap<>();
+        for (Object categoryItem : (JSONArray) root.get("entries")) {
+            JSONObject category = (JSONObject) categoryItem;
+            JSONObject categoryTree = (JSONObject) category.get("object");
+            if (!"tree".equals(category.get("type")) || categoryTree == null || categoryTree.get("entries") == null) {
+                continue;
+            }
+
+            Map<String, String> maps = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (Object mapItem : (JSONArray) categoryTree.get("entries")) {
+                JSONObject map = (JSONObject) mapItem;
+                if ("tree".equals(map.get("type"))) {
+                    maps.put((String) map.get("name"), (String) map.get("oid"));
+                }
+            }
+            categories.put((String) category.get("name"), Collections.unmodifiableMap(maps));
+        }
+
+        return Collections.unmodifiableMap(categories);
+    }
+}
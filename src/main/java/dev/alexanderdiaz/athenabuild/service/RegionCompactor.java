@@ -0,0 +1,287 @@
+package dev.alexanderdiaz.athenabuild.service;
+
+import dev.alexanderdiaz.athenabuild.AthenaBuild;
+import dev.alexanderdiaz.athenabuild.config.ConfigurationManager;
+import dev.alexanderdiaz.athenabuild.util.RegionFile;
+import dev.alexanderdiaz.athenabuild.world.WorldWrapper;
+import dev.alexanderdiaz.athenabuild.world.WorldRegistry;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import org.bukkit.Bukkit;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Rewrites the region files of unloaded worlds with their chunks packed one after another. The server
+ * only ever appends a chunk that outgrew its sectors to the end of the file, so the sectors it left
+ * behind stay unused until the file is rewritten. Region files are compacted in parallel on a worker
+ * pool and each one is replaced atomically. A world is kept from loading while it is compacted, see
+ * {@link WorldRegistry#beginMaintenance}.
+ * <p>
+ * The background job runs off the main thread and goes through the unloaded worlds one after another. It
+ * only looks at region files that changed since the world was last compacted, tells from their location
+ * table whether they have unused space, and only keeps a world from loading while such files are rewritten.
+ */
+public class RegionCompactor {
+    private static final String[] REGION_DIRECTORIES = {"region", "DIM-1/region", "DIM1/region"};
+
+    private final AthenaBuild plugin;
+    private final ExecutorService executor;
+    // When each world was last compacted, the background job skips region files that did not change since.
+    // Saved to the data folder, so a restart does not check every world again
+    private final Map<String, Long> lastCompacted = new ConcurrentHashMap<>();
+    private final File lastCompactedFile;
+    // Set while the background job runs, so a slow run is not overlapped by the next one
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    /**
+     * @param regionFiles   The number of region files of the world
+     * @param rewritten     The number of region files that had unused space and were rewritten
+     * @param bytesBefore   The size of all region files before compacting
+     * @param bytesAfter    The size of all region files after compacting
+     * @param droppedChunks Chunks whose location was invalid, the server could not read them either
+     */
+    public record Result(int regionFiles, int rewritten, long bytesBefore, long bytesAfter, int droppedChunks) {
+        public long bytesReclaimed() {
+            return bytesBefore - bytesAfter;
+        }
+    }
+
+    public RegionCompactor(AthenaBuild plugin) {
+        ConfigurationManager config = plugin.getConfigManager();
+        this.plugin = plugin;
+        this.lastCompactedFile = new File(plugin.getDataFolder(), "compaction.json");
+
+        int threads = config.getCompactThreads() > 0
+                ? config.getCompactThreads()
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadId = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "AthenaBuild-Compact-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts the background job compacting unloaded worlds, if an interval is configured
+     */
+    public void start() {
+        loadLastCompacted();
+        long intervalTicks = plugin.getConfigManager().getCompactAutoIntervalMinutes() * 60L * 20L;
+        if (intervalTicks > 0) {
+            Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::compactIdleWorlds, intervalTicks, intervalTicks);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Compacts all region files of a world. Must be called on the main thread.
+     *
+     * @param worldName The name of the world, which must not be loaded
+     * @return A future completed off the main thread once all region files are compacted
+     */
+    public CompletableFuture<Result> compact(String worldName) {
+        WorldWrapper worldWrapper = plugin.getWorldRegistry().get(worldName);
+        if (!worldWrapper.exists()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("World " + worldName + " does not exist"));
+        }
+        // The server keeps region files of loaded worlds open and writes to them at any time
+        if (worldWrapper.isLoaded()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("World " + worldName + " is loaded, close it first"));
+        }
+        if (!plugin.getWorldRegistry().beginMaintenance(worldName)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("World " + worldName + " is busy, try again later"));
+        }
+
+        long start = System.currentTimeMillis();
+        File worldDirectory = worldWrapper.getWorldDirectory();
+        return CompletableFuture.supplyAsync(() -> findRegionFiles(worldDirectory, 0),
+                        runnable -> Bukkit.getScheduler().runTaskAsynchronously(plugin, runnable))
+                .thenCompose(regionFiles -> compactFiles(worldName, regionFiles, start))
+                .whenComplete((result, error) -> plugin.getWorldRegistry().endMaintenance(worldName));
+    }
+
+    private CompletableFuture<Result> compactFiles(String worldName, List<File> regionFiles, long start) {
+        List<CompletableFuture<Result>> files = new ArrayList<>();
+        for (File regionFile : regionFiles) {
+            files.add(CompletableFuture.supplyAsync(() -> compactFile(regionFile.toPath()), executor));
+        }
+
+        return CompletableFuture.allOf(files.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> {
+                    Result total = new Result(0, 0, 0, 0, 0);
+                    for (CompletableFuture<Result> file : files) {
+                        Result result = file.join();
+                        total = new Result(
+                                total.regionFiles() + result.regionFiles(),
+                                total.rewritten() + result.rewritten(),
+                                total.bytesBefore() + result.bytesBefore(),
+                                total.bytesAfter() + result.bytesAfter(),
+                                total.droppedChunks() + result.droppedChunks());
+                    }
+
+                    recordCompacted(worldName, start);
+                    plugin.getLogger().info(String.format("Compacted %s: %d/%d region files rewritten, %.1f MB -> %.1f MB in %dms",
+                            worldName, total.rewritten(), total.regionFiles(),
+                            total.bytesBefore() / 1048576.0, total.bytesAfter() / 1048576.0,
+                            System.currentTimeMillis() - start));
+                    return total;
+                });
+    }
+
+    private void compactIdleWorlds() {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            WorldRegistry registry = plugin.getWorldRegistry();
+            for (String worldName : registry.getWorldNames()) {
+                if (registry.isLoaded(worldName) || registry.isUnderMaintenance(worldName)) {
+                    continue;
+                }
+
+                try {
+                    compactIdleWorld(worldName);
+                } catch (Exception e) {
+                    plugin.getLogger().log(Level.WARNING, "Background compaction of " + worldName + " failed", e);
+                }
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    /**
+     * Compacts the region files of an unloaded world that changed since it was last compacted and have
+     * unused space. Runs off the main thread and waits until the files are rewritten.
+     */
+    private void compactIdleWorld(String worldName) throws Exception {
+        long start = System.currentTimeMillis();
+        WorldRegistry registry = plugin.getWorldRegistry();
+        List<File> changed = findRegionFiles(new File(registry.getWorldsDirectory(), worldName), lastCompacted.getOrDefault(worldName, 0L));
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        List<File> fragmented = new ArrayList<>();
+        for (File regionFile : changed) {
+            try {
+                if (RegionFile.isFragmented(regionFile.toPath())) {
+                    fragmented.add(regionFile);
+                }
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.FINE, "Skipping unreadable region file " + regionFile, e);
+            }
+        }
+        if (fragmented.isEmpty()) {
+            recordCompacted(worldName, start);
+            return;
+        }
+
+        // Worlds are loaded on the main thread, so that is where one is kept from loading
+        if (!Bukkit.getScheduler().callSyncMethod(plugin, () -> registry.beginMaintenance(worldName)).get()) {
+            return;
+        }
+        try {
+            compactFiles(worldName, fragmented, start).join();
+        } finally {
+            registry.endMaintenance(worldName);
+        }
+    }
+
+    /**
+     * @param modifiedSince Only files modified at or after this time in milliseconds are returned
+     * @return The region files of all dimensions of a world
+     */
+    private static List<File> findRegionFiles(File worldDirectory, long modifiedSince) {
+        List<File> files = new ArrayList<>();
+        for (String directory : REGION_DIRECTORIES) {
+            File[] regionFiles = new File(worldDirectory, directory).listFiles((dir, name) -> name.endsWith(".mca"));
+            if (regionFiles == null) {
+                continue;
+            }
+
+            for (File regionFile : regionFiles) {
+                if (regionFile.lastModified() >= modifiedSince) {
+                    files.add(regionFile);
+                }
+            }
+        }
+        return files;
+    }
+
+    private void loadLastCompacted() {
+        if (!lastCompactedFile.isFile()) {
+            return;
+        }
+
+        try (Reader reader = Files.newBufferedReader(lastCompactedFile.toPath(), StandardCharsets.UTF_8)) {
+            JSONObject root = (JSONObject) new JSONParser().parse(reader);
+            for (Object worldName : root.keySet()) {
+                lastCompacted.put((String) worldName, ((Number) root.get(worldName)).longValue());
+            }
+        } catch (IOException | ParseException | ClassCastException e) {
+            plugin.getLogger().log(Level.WARNING, "Ignoring invalid " + lastCompactedFile.getName() + ", every world will be checked again", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized void recordCompacted(String worldName, long time) {
+        lastCompacted.put(worldName, time);
+
+        JSONObject root = new JSONObject();
+        root.putAll(lastCompacted);
+        File tempFile = new File(lastCompactedFile.getParentFile(), lastCompactedFile.getName() + ".tmp");
+        try {
+            lastCompactedFile.getParentFile().mkdirs();
+            try (Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+                writer.write(root.toJSONString());
+            }
+            Files.move(tempFile.toPath(), lastCompactedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to save " + lastCompactedFile.getName(), e);
+        }
+    }
+
+    private Result compactFile(Path file) {
+        try {
+            long sizeBefore = Files.size(file);
+            RegionFile region = RegionFile.read(file);
+            long sizeAfter = region.getCompactSize();
+            if (sizeAfter >= sizeBefore && region.getInvalidChunks() == 0) {
+                return new Result(1, 0, sizeBefore, sizeBefore, 0);
+            }
+
+            region.writeTo(file);
+            return new Result(1, 1, sizeBefore, sizeAfter, region.getInvalidChunks());
+        } catch (IOException e) {
+            // Leave a region file that cannot be read as it is
+            plugin.getLogger().log(Level.WARNING, "Failed to compact " + file, e);
+            long size = file.toFile().length();
+            return new Result(1, 0, size, size, 0);
+        }
+    }
+}
@@ -0,0 +1,522 @@
+package dev.alexanderdiaz.athenabuild.service;
+
+import dev.alexanderdiaz.athenabuild.AthenaBuild;
+import dev.alexanderdiaz.athenabuild.config.ConfigurationManager;
+import dev.alexanderdiaz.athenabuild.util.ChunkNbt;
+import dev.alexanderdiaz.athenabuild.util.Hashes;
+import dev.alexanderdiaz.athenabuild.util.ParallelZipWriter;
+import dev.alexanderdiaz.athenabuild.util.RegionFile;
+import dev.alexanderdiaz.athenabuild.util.TeeOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Packs world folders into ZIP archives, compressing on a dedicated worker pool. Files whose format is
+ * already compressed, such as region files holding zlib-compressed chunks, are stored without deflating.
+ * Region files can be rewritten on the way out without the chunks that hold nothing but air, which is
+ * most of a void build world.
+ * <p>
+ * With the export cache enabled the last archive of every world is kept together with the
+ * {@link WorldManifest} it was built from, so exporting a world that has not changed since just
+ * replays that archive.
+ * <p>
+ * Whole-world exports are recorded in the {@link ExportHistory}, so a later export can be a patch that
+ * only holds the files and chunks that changed since. A patch lists what was deleted in {@link #PATCH_FILE}.
+ * Recorded exports carry their id in {@link #EXPORT_FILE}, which stays in the world folder when the archive
+ * is imported, so a patch is only applied to the export it was made against.
+ */
+public class WorldExporter {
+    public static final String PATCH_FILE = "athena-patch.json";
+    public static final String EXPORT_FILE = "athena-export.json";
+
+    private final AthenaBuild plugin;
+    private final ExecutorService executor;
+    private final int threads;
+    private final int compressionLevel;
+    private final Set<String> storedExtensions = new HashSet<>();
+    private final boolean stripEmptyChunks;
+    private final boolean cacheEnabled;
+    private final File cacheDirectory;
+    // Manifests of the cached archives, and of the latest scans so unchanged files are not hashed twice
+    private final Map<String, WorldManifest> exportedManifests = new ConcurrentHashMap<>();
+    private final Map<String, WorldManifest> scannedManifests = new ConcurrentHashMap<>();
+    private final ExportHistory history;
+
+    /**
+     * @param exportId The id to record the export under, so later exports can be patches against it, or null
+     * @param manifest The manifest of the world folder from {@link #scan}, or null to not cache the archive
+     * @param area     The chunks to export, or null to export the whole world
+     * @param sinceId  The id of an earlier export to only export the changes since, or null
+     */
+    public record Options(String exportId, WorldManifest manifest, ExportArea area, String sinceId) {
+        public static final Options DEFAULT = new Options(null, null, null, null);
+    }
+
+    public WorldExporter(AthenaBuild plugin) {
+        ConfigurationManager config = plugin.getConfigManager();
+        this.plugin = plugin;
+        this.threads = config.getExportThreads() > 0 ? config.getExportThreads() : Runtime.getRuntime().availableProcessors();
+        this.compressionLevel = Math.max(0, Math.min(9, config.getExportCompressionLevel()));
+        for (String extension : config.getExportStoredExtensions()) {
+            storedExtensions.add(extension.toLowerCase(Locale.ROOT));
+        }
+        this.stripEmptyChunks = config.isExportStripEmptyChunks();
+        this.cacheEnabled = config.isExportCache();
+        this.cacheDirectory = new File(plugin.getDataFolder(), "exports");
+        this.history = new ExportHistory(plugin, new File(cacheDirectory, "history"));
+
+        AtomicInteger threadId = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "AthenaBuild-Export-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Writes a world folder as a ZIP archive
+     *
+     * @param worldFolder The world folder to export, e.g. a snapshot of the world
+     * @param worldName   The folder name the entries are placed below inside the archive
+     * @param output      The stream to write the archive to, closed by this method
+     * @throws IOException If a file could not be read or the output failed
+     */
+    public void export(File worldFolder, String worldName, OutputStream output) throws IOException {
+        export(worldFolder, worldName, Options.DEFAULT, output);
+    }
+
+    /**
+     * Writes a world folder, a part of it or its changes since an earlier export as a ZIP archive
+     *
+     * @param worldFolder The world folder to export, e.g. a snapshot of the world
+     * @param worldName   The folder name the entries are placed below inside the archive
+     * @param options     What to export and whether to cache and record it
+     * @param output      The stream to write the archive to, closed by this method
+     * @throws IOException If a file could not be read, the earlier export is unknown or the output failed
+     */
+    public void export(File worldFolder, String worldName, Options options, OutputStream output) throws IOException {
+        long start = System.currentTimeMillis();
+        ExportArea area = options.area();
+        if (area != null && options.sinceId() != null) {
+            throw new IllegalArgumentException("A patch cannot be limited to an area");
+        }
+
+        ExportHistory.State base = null;
+        if (options.sinceId() != null) {
+            base = history.load(worldName, options.sinceId());
+            if (base == null) {
+                throw new IOException("Export " + options.sinceId() + " of " + worldName + " is unknown or too old");
+            }
+        }
+
+        // Partial exports hold neither the whole world nor all of its changes, so they are not remembered
+        ExportHistory.State state = area == null && (base != null || options.exportId() != null) ? ExportHistory.State.create() : null;
+        File cacheFile = null;
+        if (options.manifest() != null && area == null && base == null) {
+            cacheDirectory.mkdirs();
+            cacheFile = File.createTempFile(worldName + "-", ".zip.tmp", cacheDirectory);
+            output = new TeeOutputStream(output, new FileOutputStream(cacheFile));
+        }
+
+        ParallelZipWriter writer = new ParallelZipWriter(output, executor, compressionLevel, threads);
+        Export export = new Export(writer, area, base, state, new ConcurrentHashMap<>(), new AtomicInteger(), new ArrayList<>());
+        try {
+            try (writer) {
+                addFolder(export, worldFolder, worldName, "");
+                if (state != null && base == null && options.exportId() != null) {
+                    byte[] exportFile = createExportFile(options.exportId());
+                    writer.addGeneratedFile(worldName + "/" + EXPORT_FILE, System.currentTimeMillis(), () -> exportFile);
+                }
+                if (base != null) {
+                    // The patch file lists what was removed, which is only known once every file was compared
+                    writer.flush();
+                    byte[] patch = createPatchFile(export, options);
+                    writer.addGeneratedFile(worldName + "/" + PATCH_FILE, System.currentTimeMillis(), () -> patch);
+                }
+            }
+
+            if (state != null && options.exportId() != null) {
+                try {
+                    awaitHashes(export);
+                    history.save(worldName, options.exportId(), state);
+                } catch (IOException e) {
+                    plugin.getLogger().log(Level.WARNING, "Failed to record export " + options.exportId() + " of "
+                            + worldName + ", it cannot be used as a patch base", e);
+                }
+            }
+
+            if (cacheFile != null) {
+                // Drop the old manifest first so a half-replaced cache never matches
+                exportedManifests.remove(worldName);
+                Files.deleteIfExists(getManifestFile(worldName).toPath());
+                Files.move(cacheFile.toPath(), getArchiveFile(worldName).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                options.manifest().save(getManifestFile(worldName));
+                exportedManifests.put(worldName, options.manifest());
+                if (options.exportId() != null) {
+                    Files.writeString(getExportIdFile(worldName).toPath(), options.exportId());
+                } else {
+                    Files.deleteIfExists(getExportIdFile(worldName).toPath());
+                }
+            }
+        } finally {
+            for (Future<?> hash : export.hashes()) {
+                hash.cancel(true);
+            }
+            if (cacheFile != null) {
+                Files.deleteIfExists(cacheFile.toPath());
+            }
+        }
+
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        String scope = area != null ? " (" + area + ")" : base != null ? " (changes since " + options.sinceId() + ")" : "";
+        plugin.getLogger().info(String.format("Exported %s%s: %d files, %d empty chunks stripped, %.1f MB -> %.1f MB in %dms (%.1f MB/s, %d threads, level %d)",
+                worldName,
+                scope,
+                writer.getEntryCount(),
+                export.strippedChunks().get(),
+                writer.getUncompressedBytes() / 1048576.0,
+                writer.getCompressedBytes() / 1048576.0,
+                elapsed,
+                writer.getUncompressedBytes() / 1048576.0 / (elapsed / 1000.0),
+                threads,
+                compressionLevel));
+    }
+
+    /**
+     * Scans a world folder for the export cache. Must be called while nothing writes to the folder.
+     *
+     * @param worldName   The name of the world the folder belongs to
+     * @param worldFolder The folder to scan
+     * @return The manifest of the folder, or null if the export cache is disabled or the scan failed
+     */
+    public WorldManifest scan(String worldName, File worldFolder) {
+        if (!cacheEnabled) {
+            return null;
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+            WorldManifest previous = scannedManifests.getOrDefault(worldName, getExportedManifest(worldName));
+            WorldManifest manifest = WorldManifest.scan(worldFolder, previous);
+            scannedManifests.put(worldName, manifest);
+            plugin.getLogger().info("Scanned " + worldName + " for changes in " + (System.currentTimeMillis() - start) + "ms");
+            return manifest;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to scan " + worldName + ", exporting it without the cache", e);
+            return null;
+        }
+    }
+
+    /**
+     * @param worldName The name of the world
+     * @param manifest  The current manifest of the world from {@link #scan}
+     * @return true if the cached archive of the world was built from exactly these files and recorded
+     */
+    public boolean isCached(String worldName, WorldManifest manifest) {
+        return manifest != null
+                && getArchiveFile(worldName).isFile()
+                && getExportIdFile(worldName).isFile()
+                && getExportedManifest(worldName).fingerprint().equals(manifest.fingerprint());
+    }
+
+    /**
+     * @param worldName The name of the world, see {@link #isCached}
+     * @return The id the cached archive was recorded under, which it carries in {@link #EXPORT_FILE}
+     * @throws IOException If the id could not be read
+     */
+    public String getCachedExportId(String worldName) throws IOException {
+        return Files.readString(getExportIdFile(worldName).toPath()).trim();
+    }
+
+    /**
+     * Writes the cached archive of a world. The archive keeps the id of the export it was built for, see
+     * {@link #getCachedExportId}.
+     *
+     * @param worldName The name of the world, see {@link #isCached}
+     * @param output    The stream to write the archive to, closed by this method
+     * @throws IOException If the archive could not be read or the output failed
+     */
+    public void exportCached(String worldName, OutputStream output) throws IOException {
+        long start = System.currentTimeMillis();
+        long size;
+        try (output) {
+            size = Files.copy(getArchiveFile(worldName).toPath(), output);
+        }
+
+        history.touch(worldName, getCachedExportId(worldName));
+        plugin.getLogger().info(String.format("Exported %s from cache: %.1f MB in %dms",
+                worldName, size / 1048576.0, System.currentTimeMillis() - start));
+    }
+
+    /**
+     * @param worldFolder The world folder to read
+     * @return The id of the export the world folder was imported from, or null if it was not imported from
+     * a recorded export
+     * @throws IOException If the export file could not be read
+     */
+    public static String readExportId(File worldFolder) throws IOException {
+        File file = new File(worldFolder, EXPORT_FILE);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            return (String) ((JSONObject) new JSONParser().parse(reader)).get("export");
+        } catch (ParseException | ClassCastException e) {
+            throw new IOException("Invalid export file " + file, e);
+        }
+    }
+
+    /**
+     * Records which export a world folder now matches, e.g. after a patch was applied to it
+     */
+    public static void writeExportId(File worldFolder, String exportId) throws IOException {
+        File file = new File(worldFolder, EXPORT_FILE);
+        File tempFile = new File(worldFolder, EXPORT_FILE + ".tmp");
+        Files.write(tempFile.toPath(), createExportFile(exportId));
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Drops the cached archive of a world, e.g. after it was deleted
+     */
+    public void forget(String worldName) {
+        exportedManifests.remove(worldName);
+        scannedManifests.remove(worldName);
+        getArchiveFile(worldName).delete();
+        getManifestFile(worldName).delete();
+        getExportIdFile(worldName).delete();
+        history.forget(worldName);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private WorldManifest getExportedManifest(String worldName) {
+        return exportedManifests.computeIfAbsent(worldName, name -> {
+            try {
+                return WorldManifest.load(getManifestFile(name));
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Ignoring invalid export manifest of " + name, e);
+                return WorldManifest.EMPTY;
+            }
+        });
+    }
+
+    private File getArchiveFile(String worldName) {
+        return new File(cacheDirectory, worldName + ".zip");
+    }
+
+    private File getManifestFile(String worldName) {
+        return new File(cacheDirectory, worldName + ".json");
+    }
+
+    private File getExportIdFile(String worldName) {
+        return new File(cacheDirectory, worldName + ".id");
+    }
+
+    private void addFolder(Export export, File folder, String baseName, String relativePath) throws IOException {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            // Skip session.lock to avoid issues
+            if (file.getName().equals("session.lock")) {
+                continue;
+            }
+            // The export and patch files of the world itself describe an earlier export, not this one
+            if (relativePath.isEmpty() && (file.getName().equals(EXPORT_FILE) || file.getName().equals(PATCH_FILE))) {
+                continue;
+            }
+
+            String filePath = baseName + "/" + file.getName();
+            String fileRelativePath = relativePath + file.getName();
+            if (file.isDirectory()) {
+                addFolder(export, file, filePath, fileRelativePath + "/");
+            } else if (export.area() != null && !export.area().includes(fileRelativePath)) {
+                continue;
+            } else if ((stripEmptyChunks || export.area() != null || export.base() != null) && file.getName().endsWith(".mca")) {
+                export.writer().addGeneratedFile(filePath, file.lastModified(), () -> rewriteRegion(file, fileRelativePath, export));
+            } else if (export.base() != null) {
+                export.writer().addGeneratedFile(filePath, file.lastModified(), () -> diffFile(file, fileRelativePath, export));
+            } else {
+                export.writer().addFile(filePath, file.toPath(), shouldDeflate(file.getName()));
+                if (export.state() != null) {
+                    // Recorded on the pool next to the copy, so a later patch can leave out what did not change
+                    export.hashes().add(executor.submit(() -> {
+                        recordHashes(file, fileRelativePath, export);
+                        return null;
+                    }));
+                }
+            }
+        }
+    }
+
+    /**
+     * Rewrites a region file without the chunks outside the export area and, if enabled, without its empty
+     * chunks. Chunks that cannot be parsed are kept as they are. For a patch only the chunks that changed
+     * since the earlier export are kept, and the file is left out if there are none.
+     */
+    private byte[] rewriteRegion(File file, String relativePath, Export export) throws IOException {
+        RegionFile region = RegionFile.read(file.toPath());
+        for (int index = 0; index < RegionFile.CHUNK_COUNT; index++) {
+            if (!region.hasChunk(index)) {
+                continue;
+            }
+
+            if (export.area() != null && !export.area().containsChunk(relativePath, index)) {
+                region.removeChunk(index);
+                continue;
+            }
+            if (!stripEmptyChunks) {
+                continue;
+            }
+
+            try {
+                if (ChunkNbt.isEmpty(region.readChunk(index))) {
+                    region.removeChunk(index);
+                    export.strippedChunks().incrementAndGet();
+                }
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.FINE, "Keeping unreadable chunk " + index + " of " + file, e);
+            }
+        }
+
+        if (export.state() != null) {
+            String[] hashes = new String[RegionFile.CHUNK_COUNT];
+            for (int index = 0; index < RegionFile.CHUNK_COUNT; index++) {
+                hashes[index] = region.chunkHash(index);
+            }
+            export.state().regions().put(relativePath, hashes);
+
+            if (export.base() != null) {
+                String[] previous = export.base().regions().getOrDefault(relativePath, new String[RegionFile.CHUNK_COUNT]);
+                List<Integer> removed = new ArrayList<>();
+                for (int index = 0; index < RegionFile.CHUNK_COUNT; index++) {
+                    if (hashes[index] != null && hashes[index].equals(previous[index])) {
+                        region.removeChunk(index);
+                    } else if (hashes[index] == null && previous[index] != null) {
+                        removed.add(index);
+                    }
+                }
+                if (!removed.isEmpty()) {
+                    export.removedChunks().put(relativePath, removed);
+                }
+                if (region.getChunkCount() == 0) {
+                    return null;
+                }
+            }
+        }
+        return region.toByteArray();
+    }
+
+    /**
+     * Records the hash of a file that is exported as it is, chunk by chunk for region files
+     */
+    private void recordHashes(File file, String relativePath, Export export) throws IOException {
+        if (file.getName().endsWith(".mca")) {
+            RegionFile region = RegionFile.read(file.toPath());
+            String[] hashes = new String[RegionFile.CHUNK_COUNT];
+            for (int index = 0; index < RegionFile.CHUNK_COUNT; index++) {
+                hashes[index] = region.chunkHash(index);
+            }
+            export.state().regions().put(relativePath, hashes);
+        } else {
+            export.state().files().put(relativePath, Hashes.sha1(file.toPath()));
+        }
+    }
+
+    private static void awaitHashes(Export export) throws IOException {
+        try {
+            for (Future<?> hash : export.hashes()) {
+                hash.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to hash the exported files", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while hashing the exported files", e);
+        }
+    }
+
+    /**
+     * Reads a file for a patch, leaving it out if it did not change since the earlier export
+     */
+    private byte[] diffFile(File file, String relativePath, Export export) throws IOException {
+        byte[] data = Files.readAllBytes(file.toPath());
+        String hash = Hashes.sha1(data);
+        export.state().files().put(relativePath, hash);
+        return hash.equals(export.base().files().get(relativePath)) ? null : data;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static byte[] createExportFile(String exportId) {
+        JSONObject exportFile = new JSONObject();
+        exportFile.put("export", exportId);
+        return exportFile.toJSONString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] createPatchFile(Export export, Options options) {
+        JSONArray deleted = new JSONArray();
+        for (String path : export.base().files().keySet()) {
+            if (!export.state().files().containsKey(path)) {
+                deleted.add(path);
+            }
+        }
+        for (String path : export.base().regions().keySet()) {
+            if (!export.state().regions().containsKey(path)) {
+                deleted.add(path);
+            }
+        }
+
+        JSONObject removedChunks = new JSONObject();
+        export.removedChunks().forEach((path, indexes) -> {
+            JSONArray array = new JSONArray();
+            array.addAll(indexes);
+            removedChunks.put(path, array);
+        });
+
+        JSONObject patch = new JSONObject();
+        patch.put("base", options.sinceId());
+        patch.put("export", options.exportId());
+        patch.put("deleted", deleted);
+        patch.put("removed_chunks", removedChunks);
+        return patch.toJSONString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private boolean shouldDeflate(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 || !storedExtensions.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private record Export(ParallelZipWriter writer, ExportArea area, ExportHistory.State base, ExportHistory.State state,
+                          Map<String, List<Integer>> removedChunks, AtomicInteger strippedChunks, List<Future<?>> hashes) {
+    }
+}
@@ -0,0 +1,177 @@
+package dev.alexanderdiaz.athenabuild.service;
+
+import dev.alexanderdiaz.athenabuild.util.Hashes;
+import dev.alexanderdiaz.athenabuild.util.LevelDat;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * The contents of a world folder as file path → size, modification time and SHA-1. A scan only hashes
+ * files whose size or modification time differ from the previous manifest, so rescanning an unchanged
+ * world costs one stat per file.
+ * <p>
+ * Saving a world rewrites some of its files even when nobody changed anything, which would keep a loaded
+ * world from ever matching its cached export. {@code level.dat} and its backup are hashed without their
+ * clock and weather timers, and player data and statistics are left out of the {@link #fingerprint()}.
+ */
+public class WorldManifest {
+    public static final WorldManifest EMPTY = new WorldManifest(Collections.emptyMap());
+    // Written by the server for the players who visited, they do not change what the world contains
+    private static final List<String> VOLATILE_FOLDERS = List.of("playerdata/", "stats/");
+
+    private final Map<String, FileState> files;
+    private String fingerprint;
+
+    /**
+     * @param size     The file size in bytes
+     * @param modified The last modification time in milliseconds
+     * @param sha1     The SHA-1 of the file contents, for level.dat see {@link LevelDat#stableHash}
+     */
+    public record FileState(long size, long modified, String sha1) {
+    }
+
+    private WorldManifest(Map<String, FileState> files) {
+        this.files = files;
+    }
+
+    public Map<String, FileState> getFiles() {
+        return files;
+    }
+
+    /**
+     * Scans a world folder, reusing the hashes of files that did not change since the previous manifest
+     *
+     * @param worldFolder The folder to scan
+     * @param previous    The manifest of an earlier scan, or {@link #EMPTY}
+     * @return The manifest of the folder
+     * @throws IOException If a file could not be read
+     */
+    public static WorldManifest scan(File worldFolder, WorldManifest previous) throws IOException {
+        Map<String, FileState> files = new TreeMap<>();
+        scanFolder(worldFolder, "", previous, files);
+        return new WorldManifest(Collections.unmodifiableMap(files));
+    }
+
+    /**
+     * @return A hash over all paths and file hashes, equal for two folders with the same contents
+     */
+    public String fingerprint() {
+        if (fingerprint == null) {
+            MessageDigest digest = Hashes.sha1();
+            files.forEach((path, state) -> {
+                if (isVolatile(path)) {
+                    return;
+                }
+                digest.update(path.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(state.sha1().getBytes(StandardCharsets.US_ASCII));
+            });
+            fingerprint = HexFormat.of().formatHex(digest.digest());
+        }
+        return fingerprint;
+    }
+
+    public static WorldManifest load(File file) throws IOException {
+        if (!file.isFile()) {
+            return EMPTY;
+        }
+
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            JSONObject root = (JSONObject) new JSONParser().parse(reader);
+            JSONObject jsonFiles = (JSONObject) root.get("files");
+
+            Map<String, FileState> files = new TreeMap<>();
+            for (Object path : jsonFiles.keySet()) {
+                JSONObject state = (JSONObject) jsonFiles.get(path);
+                files.put((String) path, new FileState(
+                        ((Number) state.get("size")).longValue(),
+                        ((Number) state.get("modified")).longValue(),
+                        (String) state.get("sha1")));
+            }
+            return new WorldManifest(Collections.unmodifiableMap(files));
+        } catch (ParseException | ClassCastException | NullPointerException e) {
+            throw new IOException("Invalid manifest " + file, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void save(File file) throws IOException {
+        JSONObject jsonFiles = new JSONObject();
+        files.forEach((path, state) -> {
+            JSONObject jsonState = new JSONObject();
+            jsonState.put("size", state.size());
+            jsonState.put("modified", state.modified());
+            jsonState.put("sha1", state.sha1());
+            jsonFiles.put(path, jsonState);
+        });
+
+        JSONObject root = new JSONObject();
+        root.put("fingerprint", fingerprint());
+        root.put("files", jsonFiles);
+
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        file.getParentFile().mkdirs();
+        try (Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(root.toJSONString());
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void scanFolder(File folder, String prefix, WorldManifest previous, Map<String, FileState> files) throws IOException {
+        File[] children = folder.listFiles();
+        if (children == null) {
+            return;
+        }
+
+        for (File child : children) {
+            // Skip session.lock, it is not exported either
+            if (child.getName().equals("session.lock")) {
+                continue;
+            }
+
+            String path = prefix + child.getName();
+            if (child.isDirectory()) {
+                scanFolder(child, path + "/", previous, files);
+                continue;
+            }
+
+            long size = child.length();
+            long modified = child.lastModified();
+            FileState known = previous.files.get(path);
+            if (known != null && known.size() == size && known.modified() == modified) {
+                files.put(path, known);
+            } else {
+                files.put(path, new FileState(size, modified, hash(path, child)));
+            }
+        }
+    }
+
+    private static boolean isVolatile(String path) {
+        return VOLATILE_FOLDERS.stream().anyMatch(path::startsWith);
+    }
+
+    private static String hash(String path, File file) throws IOException {
+        if (path.equals("level.dat") || path.equals("level.dat_old")) {
+            try {
+                return LevelDat.stableHash(file.toPath());
+            } catch (IOException e) {
+                // Not a readable level.dat, compared as it is stored
+            }
+        }
+        return Hashes.sha1(file.toPath());
+    }
+}
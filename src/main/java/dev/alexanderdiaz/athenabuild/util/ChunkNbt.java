@@ -0,0 +1,132 @@
+package dev.alexanderdiaz.athenabuild.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Reads just enough of the NBT of an Anvil chunk to tell whether anything was ever built in it, without
+ * building a tag tree. Everything else is skipped.
+ */
+public final class ChunkNbt {
+    static final byte TAG_END = 0;
+    private static final byte TAG_BYTE = 1;
+    private static final byte TAG_SHORT = 2;
+    private static final byte TAG_INT = 3;
+    private static final byte TAG_LONG = 4;
+    private static final byte TAG_FLOAT = 5;
+    private static final byte TAG_DOUBLE = 6;
+    private static final byte TAG_BYTE_ARRAY = 7;
+    private static final byte TAG_STRING = 8;
+    private static final byte TAG_LIST = 9;
+    static final byte TAG_COMPOUND = 10;
+    private static final byte TAG_INT_ARRAY = 11;
+
+    private ChunkNbt() {
+    }
+
+    /**
+     * A chunk is empty when all of its sections hold only air and it has no entities or tile entities
+     *
+     * @param nbt The uncompressed chunk NBT
+     * @return true if the chunk is empty
+     * @throws IOException If the NBT is malformed
+     */
+    public static boolean isEmpty(byte[] nbt) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(nbt));
+        if (in.readByte() != TAG_COMPOUND) {
+            throw new IOException("Chunk data is not a compound");
+        }
+        in.skipNBytes(in.readUnsignedShort());
+
+        byte type;
+        while ((type = in.readByte()) != TAG_END) {
+            String name = in.readUTF();
+            if (type == TAG_COMPOUND && name.equals("Level")) {
+                return isLevelEmpty(in);
+            }
+            skip(in, type);
+        }
+        throw new IOException("Chunk data has no Level compound");
+    }
+
+    private static boolean isLevelEmpty(DataInputStream in) throws IOException {
+        byte type;
+        while ((type = in.readByte()) != TAG_END) {
+            String name = in.readUTF();
+            if (type != TAG_LIST) {
+                skip(in, type);
+                continue;
+            }
+
+            byte elementType = in.readByte();
+            int length = in.readInt();
+            switch (name) {
+                case "Entities", "TileEntities" -> {
+                    if (length > 0) {
+                        return false;
+                    }
+                }
+                case "Sections" -> {
+                    for (int i = 0; i < length; i++) {
+                        if (elementType != TAG_COMPOUND || !isSectionEmpty(in)) {
+                            return false;
+                        }
+                    }
+                }
+                default -> {
+                    for (int i = 0; i < length; i++) {
+                        skip(in, elementType);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSectionEmpty(DataInputStream in) throws IOException {
+        byte type;
+        while ((type = in.readByte()) != TAG_END) {
+            String name = in.readUTF();
+            if (type == TAG_BYTE_ARRAY && (name.equals("Blocks") || name.equals("Add"))) {
+                byte[] blocks = new byte[in.readInt()];
+                in.readFully(blocks);
+                for (byte block : blocks) {
+                    if (block != 0) {
+                        return false;
+                    }
+                }
+            } else {
+                skip(in, type);
+            }
+        }
+        return true;
+    }
+
+    static void skip(DataInputStream in, byte type) throws IOException {
+        switch (type) {
+            case TAG_BYTE -> in.skipNBytes(1);
+            case TAG_SHORT -> in.skipNBytes(2);
+            case TAG_INT, TAG_FLOAT -> in.skipNBytes(4);
+            case TAG_LONG, TAG_DOUBLE -> in.skipNBytes(8);
+            case TAG_BYTE_ARRAY -> in.skipNBytes(in.readInt());
+            case TAG_STRING -> in.skipNBytes(in.readUnsignedShort());
+            case TAG_INT_ARRAY -> in.skipNBytes(4L * in.readInt());
+            case TAG_LIST -> {
+                byte elementType = in.readByte();
+                int length = in.readInt();
+                for (int i = 0; i < length; i++) {
+                    skip(in, elementType);
+                }
+            }
+            case TAG_COMPOUND -> {
+                byte childType;
+                while ((childType = in.readByte()) != TAG_END) {
+                    in.skipNBytes(in.readUnsignedShort());
+                    skip(in, childType);
+                }
+            }
+            default -> throw new IOException("Unknown NBT tag type " + type);
+        }
+    }
+}
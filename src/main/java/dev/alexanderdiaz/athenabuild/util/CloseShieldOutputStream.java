@@ -0,0 +1,36 @@
+package dev.alexanderdiaz.athenabuild.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream that writes to another stream but leaves it open when it is closed, so the owner of the
+ * stream decides whether it is closed normally or discarded
+ */
+public class CloseShieldOutputStream extends OutputStream {
+    private final OutputStream out;
+
+    public CloseShieldOutputStream(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.flush();
+    }
+}
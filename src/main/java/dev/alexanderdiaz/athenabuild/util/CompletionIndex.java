@@ -0,0 +1,153 @@
+package dev.alexanderdiaz.athenabuild.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Thread-safe name index for tab completion. Prefix matches come from a sorted map, so a lookup is
+ * logarithmic in the number of names. When the input has few prefix matches, names sharing enough
+ * trigrams with the input are appended as typo-tolerant suggestions, ranked by similarity.
+ * Names can be added and removed individually as the underlying data changes.
+ */
+public class CompletionIndex {
+    private static final int MAX_FUZZY_RESULTS = 10;
+    private static final int FUZZY_MIN_INPUT_LENGTH = 3;
+    private static final double FUZZY_MIN_SIMILARITY = 0.3;
+
+    // Keys are "<lowercase name>\0<name>" so names differing only in case stay distinct
+    private final ConcurrentSkipListMap<String, String> sortedNames = new ConcurrentSkipListMap<>();
+    private final Map<String, Set<String>> trigramIndex = new ConcurrentHashMap<>();
+    // Name -> number of distinct trigrams of that name
+    private final Map<String, Integer> names = new ConcurrentHashMap<>();
+
+    public void add(String name) {
+        Set<String> nameTrigrams = trigrams(name);
+        if (names.putIfAbsent(name, nameTrigrams.size()) != null) {
+            return;
+        }
+
+        sortedNames.put(key(name), name);
+        for (String trigram : nameTrigrams) {
+            trigramIndex.computeIfAbsent(trigram, t -> ConcurrentHashMap.newKeySet()).add(name);
+        }
+    }
+
+    public void remove(String name) {
+        if (names.remove(name) == null) {
+            return;
+        }
+
+        sortedNames.remove(key(name));
+        for (String trigram : trigrams(name)) {
+            trigramIndex.computeIfPresent(trigram, (t, posting) -> {
+                posting.remove(name);
+                return posting.isEmpty() ? null : posting;
+            });
+        }
+    }
+
+    /**
+     * Updates the index to contain exactly the given names, touching only the names that changed
+     *
+     * @param newNames The complete set of names
+     */
+    public void replaceAll(Collection<String> newNames) {
+        Set<String> wanted = new HashSet<>(newNames);
+        for (String name : new ArrayList<>(names.keySet())) {
+            if (!wanted.contains(name)) {
+                remove(name);
+            }
+        }
+        for (String name : wanted) {
+            add(name);
+        }
+    }
+
+    public boolean contains(String name) {
+        return names.containsKey(name);
+    }
+
+    /**
+     * @return All names in case-insensitive order
+     */
+    public List<String> all() {
+        return new ArrayList<>(sortedNames.values());
+    }
+
+    /**
+     * Completes the input against the indexed names
+     *
+     * @param input The text typed so far
+     * @return Names starting with the input in case-insensitive order, followed by similar names
+     */
+    public List<String> complete(String input) {
+        String lowerInput = input.toLowerCase();
+        if (lowerInput.isEmpty()) {
+            return all();
+        }
+
+        Set<String> results = new LinkedHashSet<>(
+                sortedNames.subMap(lowerInput, true, lowerInput + Character.MAX_VALUE, true).values());
+
+        if (results.size() < MAX_FUZZY_RESULTS && lowerInput.length() >= FUZZY_MIN_INPUT_LENGTH) {
+            for (String name : fuzzyMatches(lowerInput)) {
+                if (results.size() >= MAX_FUZZY_RESULTS) {
+                    break;
+                }
+                results.add(name);
+            }
+        }
+
+        return new ArrayList<>(results);
+    }
+
+    private List<String> fuzzyMatches(String lowerInput) {
+        Set<String> inputTrigrams = trigrams(lowerInput);
+
+        Map<String, Integer> sharedCounts = new HashMap<>();
+        for (String trigram : inputTrigrams) {
+            Set<String> posting = trigramIndex.get(trigram);
+            if (posting != null) {
+                for (String name : posting) {
+                    sharedCounts.merge(name, 1, Integer::sum);
+                }
+            }
+        }
+
+        Map<String, Double> scores = new HashMap<>();
+        sharedCounts.forEach((name, shared) -> {
+            // Dice coefficient of the two trigram sets
+            double similarity = 2.0 * shared / (inputTrigrams.size() + names.getOrDefault(name, shared));
+            if (similarity >= FUZZY_MIN_SIMILARITY) {
+                scores.put(name, similarity);
+            }
+        });
+
+        List<String> matches = new ArrayList<>(scores.keySet());
+        matches.sort(Comparator.<String>comparingDouble(scores::get).reversed()
+                .thenComparing(String.CASE_INSENSITIVE_ORDER));
+        return matches;
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase() + '\0' + name;
+    }
+
+    private static Set<String> trigrams(String name) {
+        String padded = " " + name.toLowerCase() + " ";
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+}
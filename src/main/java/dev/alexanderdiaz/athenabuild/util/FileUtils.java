@@ -0,0 +1,49 @@
+package dev.alexanderdiaz.athenabuild.util;
+
+import java.io.File;
+import java.io.IOException;
+
+public final class FileUtils {
+    private FileUtils() {
+    }
+
+    /**
+     * Resolves a relative path against a directory, rejecting paths that escape it (Zip Slip)
+     *
+     * @param directory    The directory the path must stay inside
+     * @param relativePath The relative path, using {@code /} as separator
+     * @return The resolved file
+     * @throws IOException If the path points outside of the directory
+     */
+    public static File resolveInside(File directory, String relativePath) throws IOException {
+        File destFile = new File(directory, relativePath);
+
+        String destDirPath = directory.getCanonicalPath();
+        String destFilePath = destFile.getCanonicalPath();
+
+        if (!destFilePath.startsWith(destDirPath + File.separator)) {
+            throw new IOException("Entry is outside of the target dir: " + relativePath);
+        }
+
+        return destFile;
+    }
+
+    /**
+     * Deletes a directory and everything inside it
+     *
+     * @param directory The directory to delete
+     */
+    public static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteDirectory(file);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        directory.delete();
+    }
+}
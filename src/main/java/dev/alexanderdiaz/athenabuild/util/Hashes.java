@@ -0,0 +1,44 @@
+package dev.alexanderdiaz.athenabuild.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-1 digests as hex strings, used to tell whether world files and chunks changed
+ */
+public final class Hashes {
+    private Hashes() {
+    }
+
+    public static String sha1(byte[] data) {
+        return HexFormat.of().formatHex(sha1().digest(data));
+    }
+
+    public static String sha1(Path file) throws IOException {
+        MessageDigest digest = sha1();
+        byte[] buffer = new byte[65536];
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @return A new SHA-1 digest
+     */
+    public static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package dev.alexanderdiaz.athenabuild.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Hashes a {@code level.dat} without the tags the server rewrites on every save, so two saves of a world
+ * nobody changed hash the same. Everything else, such as the spawn, game rules and world border, is
+ * hashed as stored.
+ */
+public final class LevelDat {
+    // Advance with every tick, or are set to the time of the save
+    private static final Set<String> VOLATILE_TAGS = Set.of(
+            "Time", "DayTime", "LastPlayed", "rainTime", "thunderTime", "clearWeatherTime");
+
+    private LevelDat() {
+    }
+
+    /**
+     * @param file A gzip-compressed level.dat
+     * @return The SHA-1 of the uncompressed NBT, leaving out the volatile tags of its Data compound
+     * @throws IOException If the file could not be read or is not a level.dat
+     */
+    public static String stableHash(Path file) throws IOException {
+        byte[] nbt;
+        try (InputStream input = new GZIPInputStream(Files.newInputStream(file))) {
+            nbt = input.readAllBytes();
+        }
+
+        ByteArrayInputStream bytes = new ByteArrayInputStream(nbt);
+        DataInputStream in = new DataInputStream(bytes);
+        if (in.readByte() != ChunkNbt.TAG_COMPOUND) {
+            throw new IOException(file + " is not a compound");
+        }
+        in.skipNBytes(in.readUnsignedShort());
+
+        byte type;
+        while ((type = in.readByte()) != ChunkNbt.TAG_END) {
+            String name = in.readUTF();
+            if (type == ChunkNbt.TAG_COMPOUND && name.equals("Data")) {
+                return hashData(nbt, bytes, in);
+            }
+            ChunkNbt.skip(in, type);
+        }
+        throw new IOException(file + " has no Data compound");
+    }
+
+    /**
+     * Hashes all bytes of the NBT except the volatile tags of the Data compound, which the stream is at
+     */
+    private static String hashData(byte[] nbt, ByteArrayInputStream bytes, DataInputStream in) throws IOException {
+        MessageDigest digest = Hashes.sha1();
+        int hashedUpTo = 0;
+        int tagStart = nbt.length - bytes.available();
+        byte type;
+        while ((type = in.readByte()) != ChunkNbt.TAG_END) {
+            String name = in.readUTF();
+            ChunkNbt.skip(in, type);
+            int tagEnd = nbt.length - bytes.available();
+            if (VOLATILE_TAGS.contains(name)) {
+                digest.update(nbt, hashedUpTo, tagStart - hashedUpTo);
+                hashedUpTo = tagEnd;
+            }
+            tagStart = tagEnd;
+        }
+        digest.update(nbt, hashedUpTo, nbt.length - hashedUpTo);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
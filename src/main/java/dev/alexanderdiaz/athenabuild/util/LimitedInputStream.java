@@ -0,0 +1,66 @@
+package dev.alexanderdiaz.athenabuild.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that fails as soon as more than a fixed number of bytes has been read from it
+ */
+public class LimitedInputStream extends FilterInputStream {
+    private final long limit;
+    private final String description;
+    private long count;
+
+    /**
+     * @param in          The stream to read from
+     * @param limit       The maximum number of bytes that may be read
+     * @param description What is being read, used in the error message
+     */
+    public LimitedInputStream(InputStream in, long limit, String description) {
+        super(in);
+        this.limit = limit;
+        this.description = description;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            add(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            add(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        add(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void add(long bytes) throws IOException {
+        count += bytes;
+        if (count > limit) {
+            throw new IOException(description + " exceeds the limit of " + limit / (1024 * 1024) + " MB");
+        }
+    }
+}
@@ -0,0 +1,558 @@
+package dev.alexanderdiaz.athenabuild.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a ZIP archive whose entries are compressed on a worker pool. Files are split into chunks that
+ * are deflated independently, each primed with the last 32 KB of the previous chunk as dictionary, and
+ * written back in order so the output is one valid deflate stream per entry. Files that are already
+ * compressed can be added as STORED entries instead, their CRC is computed on the pool and the file is
+ * copied as-is. Generated entries are produced on the pool and stored the same way. Only a bounded number of
+ * chunks is held in memory, so the archive can be streamed to any output. ZIP64 records are written
+ * once the archive outgrows the classic format.
+ */
+public class ParallelZipWriter implements Closeable {
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+    private static final int ZIP64_ENTRY_LIMIT = 0xFFFF;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    // Names are UTF-8, deflated entries also put their sizes in a descriptor after the data
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    // Returned for generated entries that are left out
+    private static final Chunk SKIPPED = new Chunk(null, 0, 0);
+
+    private final OutputStream out;
+    private final ExecutorService executor;
+    private final int level;
+    private final int maxInFlight;
+    private final Deque<Piece> pending = new ArrayDeque<>();
+    private final List<Entry> entries = new ArrayList<>();
+    private int chunksInFlight;
+    private long offset;
+    private long uncompressedBytes;
+    private Entry current;
+
+    /**
+     * @param out      The stream to write the archive to, closed together with this writer
+     * @param executor The pool to compress chunks on
+     * @param level    The deflate level, 0 to 9
+     * @param threads  The number of threads of the pool, used to bound the chunks held in memory
+     */
+    public ParallelZipWriter(OutputStream out, ExecutorService executor, int level, int threads) {
+        this.out = new BufferedOutputStream(out, 65536);
+        this.executor = executor;
+        this.level = level;
+        this.maxInFlight = Math.max(2, threads * 2);
+    }
+
+    /**
+     * Queues a file for compression. It is written once all files queued before it have been written.
+     *
+     * @param name The entry name inside the archive, using {@code /} as separator
+     * @param file The file to compress
+     * @throws IOException If the file could not be read or an earlier entry failed
+     */
+    public void addFile(String name, Path file) throws IOException {
+        addFile(name, file, true);
+    }
+
+    /**
+     * Queues a file. It is written once all files queued before it have been written.
+     *
+     * @param name    The entry name inside the archive, using {@code /} as separator
+     * @param file    The file to add
+     * @param deflate Whether to compress the file or to store it as-is
+     * @throws IOException If the file could not be read or an earlier entry failed
+     */
+    public void addFile(String name, Path file, boolean deflate) throws IOException {
+        long size = Files.size(file);
+        if (size >= ZIP64_LIMIT) {
+            throw new IOException("File is too large for the archive: " + file);
+        }
+
+        Entry entry = new Entry(name, file, Files.getLastModifiedTime(file).toMillis(), !deflate);
+        if (entry.stored) {
+            drain(maxInFlight - 1);
+            pending.add(new Piece(entry, executor.submit(() -> checksum(file))));
+            chunksInFlight++;
+            return;
+        }
+
+        pending.add(new Piece(entry, null));
+
+        long chunkOffset = 0;
+        do {
+            int length = (int) Math.min(CHUNK_SIZE, size - chunkOffset);
+            long start = chunkOffset;
+            boolean last = start + length >= size;
+
+            drain(maxInFlight - 1);
+            pending.add(new Piece(null, executor.submit(() -> compressChunk(file, start, length, last))));
+            chunksInFlight++;
+
+            chunkOffset += length;
+        } while (chunkOffset < size);
+    }
+
+    /**
+     * Queues an entry whose contents are produced on the pool, e.g. a rewritten copy of a file. The contents
+     * are stored as-is, so this is meant for data that is already compressed.
+     *
+     * @param name         The entry name inside the archive, using {@code /} as separator
+     * @param lastModified The modification time of the entry in milliseconds
+     * @param content      Produces the entry contents, or null to leave the entry out
+     * @throws IOException If an earlier entry failed
+     */
+    public void addGeneratedFile(String name, long lastModified, Callable<byte[]> content) throws IOException {
+        Entry entry = new Entry(name, null, lastModified, true);
+        drain(maxInFlight - 1);
+        pending.add(new Piece(entry, executor.submit(() -> {
+            byte[] data = content.call();
+            if (data == null) {
+                return SKIPPED;
+            }
+            if (data.length >= ZIP64_LIMIT) {
+                throw new IOException("Generated entry is too large for the archive: " + name);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            return new Chunk(data, crc.getValue(), data.length);
+        })));
+        chunksInFlight++;
+    }
+
+    /**
+     * Waits until every queued entry has been written, e.g. to add an entry that depends on the others
+     *
+     * @throws IOException If an entry failed
+     */
+    public void flush() throws IOException {
+        drain(0);
+    }
+
+    /**
+     * @return The number of bytes written so far
+     */
+    public long getCompressedBytes() {
+        return offset;
+    }
+
+    /**
+     * @return The number of uncompressed bytes written so far
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes;
+    }
+
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * Writes all remaining entries and the central directory, then closes the output
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            drain(0);
+            finishEntry();
+            writeCentralDirectory();
+            out.flush();
+        } finally {
+            for (Piece piece : pending) {
+                if (piece.chunk() != null) {
+                    piece.chunk().cancel(true);
+                }
+            }
+            out.close();
+        }
+    }
+
+    private void drain(int maxRemaining) throws IOException {
+        while (!pending.isEmpty() && (chunksInFlight > maxRemaining || pending.peek().chunk() == null)) {
+            Piece piece = pending.poll();
+            if (piece.entry() != null && piece.entry().stored) {
+                chunksInFlight--;
+                finishEntry();
+                Chunk checksum = await(piece.chunk());
+                if (checksum != SKIPPED) {
+                    writeStoredEntry(piece.entry(), checksum);
+                }
+                continue;
+            }
+            if (piece.entry() != null) {
+                finishEntry();
+                startEntry(piece.entry());
+                continue;
+            }
+
+            chunksInFlight--;
+            Chunk chunk = await(piece.chunk());
+            out.write(chunk.data());
+            offset += chunk.data().length;
+            current.compressedSize += chunk.data().length;
+            current.crc = current.size == 0 ? chunk.crc() : combineCrc(current.crc, chunk.crc(), chunk.length());
+            current.size += chunk.length();
+            uncompressedBytes += chunk.length();
+        }
+    }
+
+    private Chunk await(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ioException ? ioException : new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing", e);
+        }
+    }
+
+    private Chunk compressChunk(Path file, long start, int length, boolean last) throws IOException {
+        int dictionaryLength = (int) Math.min(DICTIONARY_SIZE, start);
+        byte[] input = new byte[dictionaryLength + length];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.wrap(input);
+            long position = start - dictionaryLength;
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("File changed while compressing: " + file);
+                }
+                position += read;
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(input, dictionaryLength, length);
+
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionaryLength > 0) {
+                deflater.setDictionary(input, 0, dictionaryLength);
+            }
+            deflater.setInput(input, dictionaryLength, length);
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[65536];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                // A sync flush ends the chunk on a byte boundary without ending the deflate stream
+                int written;
+                do {
+                    written = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, written);
+                } while (written == buffer.length);
+            }
+            return new Chunk(compressed.toByteArray(), crc.getValue(), length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private Chunk checksum(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        long length = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(65536);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                length += buffer.remaining();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return new Chunk(null, crc.getValue(), length);
+    }
+
+    private void startEntry(Entry entry) throws IOException {
+        entry.headerOffset = offset;
+        writeLocalHeader(entry);
+        this.current = entry;
+    }
+
+    private void writeStoredEntry(Entry entry, Chunk checksum) throws IOException {
+        entry.headerOffset = offset;
+        entry.crc = checksum.crc();
+        entry.size = checksum.length();
+        entry.compressedSize = checksum.length();
+        writeLocalHeader(entry);
+
+        if (checksum.data() != null) {
+            out.write(checksum.data());
+        } else {
+            long copied;
+            try (FileChannel channel = FileChannel.open(entry.file, StandardOpenOption.READ)) {
+                copied = channel.transferTo(0, entry.size, Channels.newChannel(out));
+            }
+            if (copied != entry.size) {
+                throw new IOException("File changed while compressing: " + entry.file);
+            }
+        }
+
+        offset += entry.size;
+        uncompressedBytes += entry.size;
+        entries.add(entry);
+    }
+
+    private void writeLocalHeader(Entry entry) throws IOException {
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer header = littleEndian(30 + name.length);
+        header.putInt(LOCAL_HEADER_SIGNATURE);
+        header.putShort((short) 20);
+        header.putShort((short) entry.flags());
+        header.putShort((short) entry.method());
+        header.putInt(entry.dosTime);
+        // Deflated entries are streamed, their crc and sizes follow in the data descriptor
+        header.putInt((int) entry.crc);
+        header.putInt((int) entry.compressedSize);
+        header.putInt((int) entry.size);
+        header.putShort((short) name.length);
+        header.putShort((short) 0);
+        header.put(name);
+        write(header);
+    }
+
+    private void finishEntry() throws IOException {
+        if (current == null) {
+            return;
+        }
+
+        ByteBuffer descriptor = littleEndian(16);
+        descriptor.putInt(DATA_DESCRIPTOR_SIGNATURE);
+        descriptor.putInt((int) current.crc);
+        descriptor.putInt((int) current.compressedSize);
+        descriptor.putInt((int) current.size);
+        write(descriptor);
+
+        entries.add(current);
+        this.current = null;
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long centralDirectoryOffset = offset;
+        for (Entry entry : entries) {
+            byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+            boolean zip64 = entry.headerOffset >= ZIP64_LIMIT;
+
+            ByteBuffer header = littleEndian(46 + name.length + (zip64 ? 12 : 0));
+            header.putInt(CENTRAL_HEADER_SIGNATURE);
+            header.putShort((short) (zip64 ? 45 : 20));
+            header.putShort((short) (zip64 ? 45 : 20));
+            header.putShort((short) entry.flags());
+            header.putShort((short) entry.method());
+            header.putInt(entry.dosTime);
+            header.putInt((int) entry.crc);
+            header.putInt((int) entry.compressedSize);
+            header.putInt((int) entry.size);
+            header.putShort((short) name.length);
+            header.putShort((short) (zip64 ? 12 : 0));
+            header.putShort((short) 0); // comment length
+            header.putShort((short) 0); // disk number
+            header.putShort((short) 0); // internal attributes
+            header.putInt(0); // external attributes
+            header.putInt(zip64 ? (int) ZIP64_LIMIT : (int) entry.headerOffset);
+            header.put(name);
+            if (zip64) {
+                header.putShort((short) 0x0001);
+                header.putShort((short) 8);
+                header.putLong(entry.headerOffset);
+            }
+            write(header);
+        }
+
+        long centralDirectorySize = offset - centralDirectoryOffset;
+        boolean zip64 = entries.size() >= ZIP64_ENTRY_LIMIT
+                || centralDirectoryOffset >= ZIP64_LIMIT
+                || centralDirectorySize >= ZIP64_LIMIT;
+
+        if (zip64) {
+            long zip64EndOffset = offset;
+            ByteBuffer end = littleEndian(56 + 20);
+            end.putInt(ZIP64_END_SIGNATURE);
+            end.putLong(44);
+            end.putShort((short) 45);
+            end.putShort((short) 45);
+            end.putInt(0);
+            end.putInt(0);
+            end.putLong(entries.size());
+            end.putLong(entries.size());
+            end.putLong(centralDirectorySize);
+            end.putLong(centralDirectoryOffset);
+
+            end.putInt(ZIP64_LOCATOR_SIGNATURE);
+            end.putInt(0);
+            end.putLong(zip64EndOffset);
+            end.putInt(1);
+            write(end);
+        }
+
+        ByteBuffer end = littleEndian(22);
+        end.putInt(END_SIGNATURE);
+        end.putShort((short) 0);
+        end.putShort((short) 0);
+        end.putShort((short) Math.min(entries.size(), ZIP64_ENTRY_LIMIT));
+        end.putShort((short) Math.min(entries.size(), ZIP64_ENTRY_LIMIT));
+        end.putInt((int) Math.min(centralDirectorySize, ZIP64_LIMIT));
+        end.putInt((int) Math.min(centralDirectoryOffset, ZIP64_LIMIT));
+        end.putShort((short) 0);
+        write(end);
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+        offset += buffer.position();
+    }
+
+    private static ByteBuffer littleEndian(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int toDosTime(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (time.getYear() - 1980) << 25
+                | time.getMonthValue() << 21
+                | time.getDayOfMonth() << 16
+                | time.getHour() << 11
+                | time.getMinute() << 5
+                | time.getSecond() >> 1;
+    }
+
+    /**
+     * Computes the CRC-32 of two concatenated blocks from their individual CRCs, as zlib's crc32_combine
+     */
+    private static long combineCrc(long crc1, long crc2, long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+
+        long[] even = new long[32];
+        long[] odd = new long[32];
+
+        // Operator for one zero bit
+        odd[0] = 0xEDB88320L;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+
+        gf2MatrixSquare(even, odd); // two zero bits
+        gf2MatrixSquare(odd, even); // four zero bits
+
+        do {
+            // Apply zeros operator for this bit of length2
+            gf2MatrixSquare(even, odd);
+            if ((length2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(even, crc1);
+            }
+            length2 >>= 1;
+            if (length2 == 0) {
+                break;
+            }
+
+            gf2MatrixSquare(odd, even);
+            if ((length2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(odd, crc1);
+            }
+            length2 >>= 1;
+        } while (length2 != 0);
+
+        return crc1 ^ crc2;
+    }
+
+    private static long gf2MatrixTimes(long[] matrix, long vector) {
+        long sum = 0;
+        int i = 0;
+        while (vector != 0) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+            vector >>= 1;
+            i++;
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square, long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2MatrixTimes(matrix, matrix[n]);
+        }
+    }
+
+    private record Piece(Entry entry, Future<Chunk> chunk) {
+    }
+
+    private record Chunk(byte[] data, long crc, long length) {
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final Path file;
+        private final int dosTime;
+        private final boolean stored;
+        private long headerOffset;
+        private long crc;
+        private long compressedSize;
+        private long size;
+
+        private Entry(String name, Path file, long lastModified, boolean stored) {
+            this.name = name;
+            this.file = file;
+            this.dosTime = toDosTime(lastModified);
+            this.stored = stored;
+        }
+
+        private int method() {
+            return stored ? METHOD_STORED : METHOD_DEFLATED;
+        }
+
+        private int flags() {
+            return stored ? FLAG_UTF8 : FLAG_UTF8 | FLAG_DATA_DESCRIPTOR;
+        }
+    }
+}
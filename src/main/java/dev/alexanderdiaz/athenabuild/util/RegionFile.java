@@ -0,0 +1,292 @@
+package dev.alexanderdiaz.athenabuild.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * An Anvil region file held in memory. The file starts with a table of 1024 chunk locations and one of
+ * 1024 timestamps, followed by the chunks in 4 KB sectors. Each chunk is stored as its length, a
+ * compression type and the compressed NBT. Chunks are kept compressed, {@link #toByteArray()} writes
+ * them back packed one after another without unused sectors.
+ */
+public class RegionFile {
+    public static final int SECTOR_SIZE = 4096;
+    public static final int CHUNK_COUNT = 1024;
+    private static final int HEADER_SIZE = 2 * SECTOR_SIZE;
+    // The location table stores sector counts in a single byte
+    private static final int MAX_CHUNK_SECTORS = 255;
+    private static final byte COMPRESSION_GZIP = 1;
+    private static final byte COMPRESSION_ZLIB = 2;
+
+    // Compression type followed by the compressed data, null for chunks that were never saved
+    private final byte[][] chunks = new byte[CHUNK_COUNT][];
+    private final int[] timestamps = new int[CHUNK_COUNT];
+    private int invalidChunks;
+
+    private RegionFile() {
+    }
+
+    /**
+     * @return A region without chunks
+     */
+    public static RegionFile empty() {
+        return new RegionFile();
+    }
+
+    /**
+     * Reads a region file. Chunks whose location points outside the file are dropped, the server treats them
+     * as missing too.
+     *
+     * @param file The region file
+     * @return The region
+     * @throws IOException If the file could not be read
+     */
+    public static RegionFile read(Path file) throws IOException {
+        return read(Files.readAllBytes(file));
+    }
+
+    public static RegionFile read(byte[] data) throws IOException {
+        RegionFile region = new RegionFile();
+        // An empty file is a valid region without chunks
+        if (data.length == 0) {
+            return region;
+        }
+        if (data.length < HEADER_SIZE) {
+            throw new IOException("Region file is truncated");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        for (int index = 0; index < CHUNK_COUNT; index++) {
+            int location = buffer.getInt(index * 4);
+            region.timestamps[index] = buffer.getInt(SECTOR_SIZE + index * 4);
+            if (location == 0) {
+                continue;
+            }
+
+            long start = (long) (location >>> 8) * SECTOR_SIZE;
+            long sectors = location & 0xFF;
+            if (start < HEADER_SIZE || start + 5 > data.length) {
+                region.invalidChunks++;
+                continue;
+            }
+
+            int length = buffer.getInt((int) start);
+            if (length <= 1 || length + 4 > sectors * SECTOR_SIZE || start + 4 + length > data.length) {
+                region.invalidChunks++;
+                continue;
+            }
+
+            byte[] chunk = new byte[length];
+            System.arraycopy(data, (int) start + 4, chunk, 0, length);
+            region.chunks[index] = chunk;
+        }
+        return region;
+    }
+
+    /**
+     * Tells whether rewriting a region file would make it smaller or drop invalid chunks, the same as
+     * comparing {@link #getCompactSize()} and {@link #getInvalidChunks()} after {@link #read(Path)}, but
+     * only reads the location table and the length of every chunk
+     *
+     * @param file The region file
+     * @return true if the file has unused sectors or invalid chunks
+     * @throws IOException If the file could not be read or is truncated
+     */
+    public static boolean isFragmented(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize == 0) {
+                return false;
+            }
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Region file is truncated");
+            }
+
+            ByteBuffer locations = ByteBuffer.allocate(SECTOR_SIZE);
+            readFully(channel, locations, 0);
+            ByteBuffer length = ByteBuffer.allocate(4);
+            long compactSize = HEADER_SIZE;
+            for (int index = 0; index < CHUNK_COUNT; index++) {
+                int location = locations.getInt(index * 4);
+                if (location == 0) {
+                    continue;
+                }
+
+                long start = (long) (location >>> 8) * SECTOR_SIZE;
+                long sectors = location & 0xFF;
+                if (start < HEADER_SIZE || start + 5 > fileSize) {
+                    return true;
+                }
+
+                length.clear();
+                readFully(channel, length, start);
+                int chunkLength = length.getInt(0);
+                if (chunkLength <= 1 || chunkLength + 4 > sectors * SECTOR_SIZE || start + 4 + chunkLength > fileSize) {
+                    return true;
+                }
+                compactSize += (chunkLength + 4 + SECTOR_SIZE - 1) / SECTOR_SIZE * (long) SECTOR_SIZE;
+            }
+            return compactSize < fileSize;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Region file is truncated");
+            }
+        }
+    }
+
+    /**
+     * @param x The chunk x coordinate inside the region, 0 to 31
+     * @param z The chunk z coordinate inside the region, 0 to 31
+     * @return The index of the chunk in the location table
+     */
+    public static int indexOf(int x, int z) {
+        return (x & 31) + (z & 31) * 32;
+    }
+
+    public boolean hasChunk(int index) {
+        return chunks[index] != null;
+    }
+
+    public void removeChunk(int index) {
+        chunks[index] = null;
+        timestamps[index] = 0;
+    }
+
+    /**
+     * Replaces a chunk with the one at the same index of another region
+     */
+    public void copyChunk(RegionFile source, int index) {
+        chunks[index] = source.chunks[index];
+        timestamps[index] = source.timestamps[index];
+    }
+
+    /**
+     * @return The SHA-1 of the stored chunk, equal for chunks saved with the same contents, or null if the
+     * chunk is missing
+     */
+    public String chunkHash(int index) {
+        byte[] chunk = chunks[index];
+        return chunk != null ? Hashes.sha1(chunk) : null;
+    }
+
+    public int getChunkCount() {
+        int count = 0;
+        for (byte[] chunk : chunks) {
+            if (chunk != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of chunks dropped while reading because their location was invalid
+     */
+    public int getInvalidChunks() {
+        return invalidChunks;
+    }
+
+    /**
+     * @return The uncompressed NBT of a chunk
+     * @throws IOException If the chunk uses an unknown compression or its data is corrupt
+     */
+    public byte[] readChunk(int index) throws IOException {
+        byte[] chunk = chunks[index];
+        InputStream compressed = new ByteArrayInputStream(chunk, 1, chunk.length - 1);
+        InputStream input = switch (chunk[0]) {
+            case COMPRESSION_GZIP -> new GZIPInputStream(compressed);
+            case COMPRESSION_ZLIB -> new InflaterInputStream(compressed);
+            default -> throw new IOException("Unknown chunk compression type " + chunk[0]);
+        };
+        try (input) {
+            return input.readAllBytes();
+        }
+    }
+
+    /**
+     * @return The size of the region once written, see {@link #toByteArray()}
+     */
+    public long getCompactSize() {
+        long size = HEADER_SIZE;
+        for (byte[] chunk : chunks) {
+            if (chunk != null) {
+                size += sectorsOf(chunk) * (long) SECTOR_SIZE;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Writes the region with all chunks packed directly after the header, in location table order
+     *
+     * @return The region file contents
+     * @throws IOException If a chunk is too large for the region format
+     */
+    public byte[] toByteArray() throws IOException {
+        long size = getCompactSize();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Region is too large to write");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        int sector = HEADER_SIZE / SECTOR_SIZE;
+        for (int index = 0; index < CHUNK_COUNT; index++) {
+            byte[] chunk = chunks[index];
+            if (chunk == null) {
+                continue;
+            }
+
+            int sectors = sectorsOf(chunk);
+            if (sectors > MAX_CHUNK_SECTORS) {
+                throw new IOException("Chunk " + index + " is too large for the region format");
+            }
+            buffer.putInt(index * 4, sector << 8 | sectors);
+            buffer.putInt(SECTOR_SIZE + index * 4, timestamps[index]);
+            buffer.putInt(sector * SECTOR_SIZE, chunk.length);
+            buffer.put(sector * SECTOR_SIZE + 4, chunk);
+            sector += sectors;
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Writes the region to a file. The region is written next to the file and swapped in, so a crash
+     * never leaves a half-written region file behind.
+     *
+     * @param file The region file to replace or create
+     * @throws IOException If the file could not be written
+     */
+    public void writeTo(Path file) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(toByteArray());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static int sectorsOf(byte[] chunk) {
+        return (chunk.length + 4 + SECTOR_SIZE - 1) / SECTOR_SIZE;
+    }
+}
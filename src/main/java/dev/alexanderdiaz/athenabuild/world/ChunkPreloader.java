@@ -0,0 +1,84 @@
+package dev.alexanderdiaz.athenabuild.world;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+
+/**
+ * Loads the chunks around a location over several ticks before a player is sent there, so the teleport
+ * finds them loaded instead of loading them all in one tick. Chunks are loaded nearest first and each
+ * tick stops loading once its time budget is spent. A single chunk cannot be split, so a tick may run
+ * over the budget by the time one chunk takes to load.
+ */
+public final class ChunkPreloader {
+    private ChunkPreloader() {
+    }
+
+    /**
+     * Starts loading the chunks in the next tick. Must be called on the main thread.
+     *
+     * @param plugin      The plugin to schedule the loading with
+     * @param center      The location to load the chunks around
+     * @param radius      The radius in chunks, 0 loads only the chunk of the location
+     * @param budgetNanos The time to spend loading chunks per tick
+     * @return A future completed on the main thread once all chunks are loaded, or failed if the world
+     * is unloaded first
+     */
+    public static CompletableFuture<Void> preload(Plugin plugin, Location center, int radius, long budgetNanos) {
+        World world = center.getWorld();
+        int centerX = center.getBlockX() >> 4;
+        int centerZ = center.getBlockZ() >> 4;
+
+        List<int[]> chunks = new ArrayList<>();
+        for (int x = centerX - radius; x <= centerX + radius; x++) {
+            for (int z = centerZ - radius; z <= centerZ + radius; z++) {
+                if (!world.isChunkLoaded(x, z)) {
+                    chunks.add(new int[]{x, z});
+                }
+            }
+        }
+        chunks.sort(Comparator.comparingInt(chunk -> square(chunk[0] - centerX) + square(chunk[1] - centerZ)));
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (chunks.isEmpty()) {
+            future.complete(null);
+            return future;
+        }
+
+        Deque<int[]> remaining = new ArrayDeque<>(chunks);
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                if (Bukkit.getWorld(world.getUID()) == null) {
+                    cancel();
+                    future.completeExceptionally(new IllegalStateException("World " + world.getName() + " was unloaded"));
+                    return;
+                }
+
+                long start = System.nanoTime();
+                while (!remaining.isEmpty() && System.nanoTime() - start < budgetNanos) {
+                    int[] chunk = remaining.poll();
+                    world.loadChunk(chunk[0], chunk[1]);
+                }
+
+                if (remaining.isEmpty()) {
+                    cancel();
+                    future.complete(null);
+                }
+            }
+        }.runTaskTimer(plugin, 1, 1);
+        return future;
+    }
+
+    private static int square(int value) {
+        return value * value;
+    }
+}
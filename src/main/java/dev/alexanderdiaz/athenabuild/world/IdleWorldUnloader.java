@@ -0,0 +1,81 @@
+package dev.alexanderdiaz.athenabuild.world;
+
+import dev.alexanderdiaz.athenabuild.AthenaBuild;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
+/**
+ * Saves and unloads athena worlds nobody has been in for a while, so loaded worlds follow the players
+ * building instead of every world opened since the last restart. Worlds are checked once a second and
+ * at most one world is unloaded per check, so saving several idle worlds is spread over multiple ticks.
+ * Pinned worlds are never unloaded.
+ */
+public class IdleWorldUnloader {
+    private static final long CHECK_INTERVAL_TICKS = 20;
+
+    private final AthenaBuild plugin;
+    private final long timeoutMillis;
+    private final Set<String> pinnedWorlds = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    // When a player was last seen in each loaded world, only accessed on the main thread
+    private final Map<String, Long> lastOccupied = new HashMap<>();
+
+    public IdleWorldUnloader(AthenaBuild plugin) {
+        this.plugin = plugin;
+        this.timeoutMillis = plugin.getConfigManager().getIdleUnloadMinutes() * 60_000L;
+        this.pinnedWorlds.addAll(plugin.getConfigManager().getPinnedWorlds());
+    }
+
+    /**
+     * Starts checking for idle worlds, if a timeout is configured
+     */
+    public void start() {
+        if (timeoutMillis > 0) {
+            Bukkit.getScheduler().runTaskTimer(plugin, this::unloadIdleWorld, CHECK_INTERVAL_TICKS, CHECK_INTERVAL_TICKS);
+        }
+    }
+
+    private void unloadIdleWorld() {
+        WorldRegistry registry = plugin.getWorldRegistry();
+        List<String> loadedWorlds = registry.getLoadedWorldNames();
+        lastOccupied.keySet().retainAll(loadedWorlds);
+
+        long now = System.currentTimeMillis();
+        WorldWrapper idlest = null;
+        long idlestSince = Long.MAX_VALUE;
+        for (String worldName : loadedWorlds) {
+            WorldWrapper worldWrapper = registry.get(worldName);
+            if (!worldWrapper.isLoaded()) {
+                continue;
+            }
+
+            World world = worldWrapper.getWorld();
+            if (!world.getPlayers().isEmpty()) {
+                lastOccupied.put(worldName, now);
+                continue;
+            }
+
+            // Worlds nobody entered yet count from when they were first seen loaded
+            long since = lastOccupied.computeIfAbsent(worldName, name -> now);
+            // Unloading a frozen world would save it in the middle of a snapshot
+            if (pinnedWorlds.contains(worldName) || registry.isFrozen(world) || now - since < timeoutMillis) {
+                continue;
+            }
+
+            if (since < idlestSince) {
+                idlest = worldWrapper;
+                idlestSince = since;
+            }
+        }
+
+        if (idlest != null && idlest.unloadWorld()) {
+            lastOccupied.remove(idlest.getWorldName());
+            plugin.getLogger().info("Unloaded " + idlest.getWorldName() + " after "
+                    + (now - idlestSince) / 60_000 + " minutes without players");
+        }
+    }
+}
@@ -1,13 +1,31 @@
 package dev.alexanderdiaz.athenabuild.world;
 
 import java.util.Random;
+import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.generator.ChunkGenerator;
 
-@SuppressWarnings("deprecation")
+/**
+ * Generates empty chunks. Every chunk gets the same section array without any sections, which the
+ * server only reads, so generating a chunk allocates nothing here.
+ */
 public class NullChunkGenerator extends ChunkGenerator {
+    // One entry per 16 block high section, all missing
+    private static final short[][] EMPTY_SECTIONS = new short[16][];
+
+    @Override
+    public short[][] generateExtBlockSections(World world, Random random, int x, int z, BiomeGrid biomes) {
+        return EMPTY_SECTIONS;
+    }
+
+    @Override
+    public boolean canSpawn(World world, int x, int z) {
+        // The default looks for sand, which makes the server load chunks all over the void searching for it
+        return true;
+    }
+
     @Override
-    public byte[] generate(World world, Random random, int x, int z) {
-        return new byte[65536];
+    public Location getFixedSpawnLocation(World world, Random random) {
+        return new Location(world, 0.5, 64, 0.5);
     }
 }
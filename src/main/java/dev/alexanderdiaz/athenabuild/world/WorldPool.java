@@ -0,0 +1,141 @@
+package dev.alexanderdiaz.athenabuild.world;
+
+import dev.alexanderdiaz.athenabuild.AthenaBuild;
+import dev.alexanderdiaz.athenabuild.util.FileUtils;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
+/**
+ * Keeps void worlds created ahead of time in a staging directory, so {@code /create} only has to move one
+ * into the worlds directory and load it instead of generating and initializing a new world. The pool is
+ * refilled one world at a time, and only while the server keeps up with its tick rate. Pooled worlds are
+ * unloaded once created, so they cost disk space but no memory.
+ */
+public class WorldPool {
+    public static final String POOL_DIRECTORY = "athena_worlds_pool";
+    // Worlds are created under this prefix and renamed once all their files are written
+    private static final String PENDING_PREFIX = "pending-";
+    private static final long CHECK_INTERVAL_TICKS = 20;
+    // Twenty ticks taking longer than this means the server is below 18 TPS and too busy to create a world
+    private static final long BUSY_THRESHOLD_MS = 1100;
+
+    private final AthenaBuild plugin;
+    private final File poolDirectory;
+    private final int size;
+    private final Queue<File> ready = new ConcurrentLinkedQueue<>();
+    private volatile boolean refilling;
+    // Set when a world could not be created, retrying every second would only flood the log
+    private boolean failed;
+    private long lastCheck;
+
+    public WorldPool(AthenaBuild plugin) {
+        this.plugin = plugin;
+        this.poolDirectory = new File(Bukkit.getWorldContainer().getParentFile(), POOL_DIRECTORY);
+        this.size = Math.max(0, plugin.getConfigManager().getWorldPoolSize());
+    }
+
+    /**
+     * Picks up the worlds pooled before the last restart and starts refilling the pool, if a size is configured
+     */
+    public void start() {
+        if (size == 0) {
+            return;
+        }
+
+        File[] files = poolDirectory.listFiles(File::isDirectory);
+        if (files != null) {
+            for (File file : files) {
+                // Creation was interrupted by a restart, the world may be incomplete
+                if (file.getName().startsWith(PENDING_PREFIX)) {
+                    FileUtils.deleteDirectory(file);
+                } else {
+                    ready.add(file);
+                }
+            }
+        }
+
+        lastCheck = System.currentTimeMillis();
+        Bukkit.getScheduler().runTaskTimer(plugin, this::refill, CHECK_INTERVAL_TICKS, CHECK_INTERVAL_TICKS);
+    }
+
+    /**
+     * Takes a world out of the pool, see {@link WorldWrapper#claimPooledWorld(File)}
+     *
+     * @return The directory of an unloaded void world, or null if the pool is empty
+     */
+    public File claim() {
+        return ready.poll();
+    }
+
+    /**
+     * Puts back a claimed world that was not used, so it can be claimed again
+     *
+     * @param pooledDir The directory returned by {@link #claim()}, unchanged
+     */
+    public void release(File pooledDir) {
+        if (pooledDir.isDirectory()) {
+            ready.add(pooledDir);
+        }
+    }
+
+    /**
+     * Deletes a claimed world that could not be used, e.g. because it could not be moved
+     *
+     * @param pooledDir The directory returned by {@link #claim()}
+     */
+    public void discard(File pooledDir) {
+        FileUtils.deleteDirectory(pooledDir);
+    }
+
+    private void refill() {
+        long now = System.currentTimeMillis();
+        boolean busy = now - lastCheck > BUSY_THRESHOLD_MS;
+        lastCheck = now;
+        if (failed || busy || refilling || ready.size() >= size) {
+            return;
+        }
+
+        String id = UUID.randomUUID().toString().substring(0, 8);
+        File pendingDir = new File(poolDirectory, PENDING_PREFIX + id);
+        File readyDir = new File(poolDirectory, id);
+
+        long start = System.nanoTime();
+        World world;
+        try {
+            world = WorldWrapper.generateVoidWorld(pendingDir);
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to create pooled world, stopped refilling the world pool", e);
+            failed = true;
+            return;
+        }
+        if (!Bukkit.unloadWorld(world, true)) {
+            plugin.getLogger().severe("Failed to unload pooled world " + id + ", stopped refilling the world pool");
+            failed = true;
+            return;
+        }
+        plugin.getLogger().info("Created pooled world " + id + " in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+
+        // Unloading queues the chunks on the file IO thread, the world is only handed out once they are written
+        refilling = true;
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                WorldWrapper.drainFileIoThread();
+                Files.move(pendingDir.toPath(), readyDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                ready.add(readyDir);
+            } catch (ReflectiveOperationException | IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to stage pooled world " + id, e);
+                FileUtils.deleteDirectory(pendingDir);
+            } finally {
+                refilling = false;
+            }
+        });
+    }
+}
@@ -0,0 +1,268 @@
+package dev.alexanderdiaz.athenabuild.world;
+
+import dev.alexanderdiaz.athenabuild.AthenaBuild;
+import dev.alexanderdiaz.athenabuild.util.CompletionIndex;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
+/**
+ * Keeps track of every world in the worlds directory and which of them are loaded, so listing worlds
+ * never touches the filesystem. Worlds created, imported or deleted through the plugin register
+ * themselves, changes made outside the plugin are picked up by watching the worlds directory and
+ * loaded state follows the world load and unload events.
+ */
+public class WorldRegistry {
+    private final AthenaBuild plugin;
+    @Getter
+    private final File worldsDirectory;
+    private final Map<String, WorldWrapper> wrappers = new ConcurrentHashMap<>();
+    private final Set<String> loadedWorlds = ConcurrentHashMap.newKeySet();
+    private final Set<String> frozenWorlds = ConcurrentHashMap.newKeySet();
+    private final Set<String> maintainedWorlds = ConcurrentHashMap.newKeySet();
+    // Worlds being loaded without their spawn area, see WorldWrapper#loadWorld(boolean)
+    private final Set<String> spawnAreaSkipped = ConcurrentHashMap.newKeySet();
+    @Getter
+    private final CompletionIndex index = new CompletionIndex();
+    private WatchService watchService;
+
+    public WorldRegistry(AthenaBuild plugin) {
+        this.plugin = plugin;
+        this.worldsDirectory = new File(Bukkit.getWorldContainer().getParentFile(), WorldWrapper.WORLDS_DIRECTORY);
+    }
+
+    /**
+     * Scans the worlds directory once, picks up already loaded worlds and starts watching for changes
+     */
+    public void load() {
+        rescan();
+        for (World world : Bukkit.getWorlds()) {
+            markLoaded(world);
+        }
+        startWatching();
+    }
+
+    public void shutdown() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to close worlds directory watcher", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the canonical wrapper of a world. Worlds that do not exist yet get a fresh wrapper
+     * which becomes canonical once the world is created or imported.
+     *
+     * @param worldName The name of the world inside the worlds directory
+     * @return The wrapper for the world
+     */
+    public WorldWrapper get(String worldName) {
+        if (!index.contains(worldName)) {
+            return new WorldWrapper(plugin, worldName);
+        }
+        return wrappers.computeIfAbsent(worldName, name -> new WorldWrapper(plugin, name));
+    }
+
+    /**
+     * @return The names of all worlds in case-insensitive order
+     */
+    public List<String> getWorldNames() {
+        return index.all();
+    }
+
+    /**
+     * @return The names of all loaded worlds in case-insensitive order
+     */
+    public List<String> getLoadedWorldNames() {
+        List<String> names = new ArrayList<>(loadedWorlds);
+        names.sort(String.CASE_INSENSITIVE_ORDER);
+        return names;
+    }
+
+    public boolean isLoaded(String worldName) {
+        return loadedWorlds.contains(worldName);
+    }
+
+    /**
+     * Keeps the chunks of a world from unloading, and therefore from being written to disk, until it is unfrozen
+     *
+     * @return false if the world is already frozen
+     */
+    boolean freeze(String worldName) {
+        return frozenWorlds.add(worldName);
+    }
+
+    void unfreeze(String worldName) {
+        frozenWorlds.remove(worldName);
+    }
+
+    public boolean isFrozen(World world) {
+        String worldName = nameOf(world);
+        return worldName != null && frozenWorlds.contains(worldName);
+    }
+
+    /**
+     * Keeps an unloaded world from loading while its files are rewritten, e.g. by compaction or a patch.
+     * Must be called on the main thread, where worlds are loaded.
+     *
+     * @return false if the world is loaded or already under maintenance
+     */
+    public boolean beginMaintenance(String worldName) {
+        return !loadedWorlds.contains(worldName) && maintainedWorlds.add(worldName);
+    }
+
+    public void endMaintenance(String worldName) {
+        maintainedWorlds.remove(worldName);
+    }
+
+    public boolean isUnderMaintenance(String worldName) {
+        return maintainedWorlds.contains(worldName);
+    }
+
+    void skipSpawnArea(String worldName) {
+        spawnAreaSkipped.add(worldName);
+    }
+
+    void prepareSpawnArea(String worldName) {
+        spawnAreaSkipped.remove(worldName);
+    }
+
+    /**
+     * @return true if the server should neither load nor keep loaded the spawn area of a world that is
+     * being loaded, because it is an athena world and skipping is configured or requested by the load
+     */
+    public boolean skipsSpawnArea(World world) {
+        String worldName = nameOf(world);
+        return worldName != null && (plugin.getConfigManager().isSkipSpawnArea() || spawnAreaSkipped.contains(worldName));
+    }
+
+    /**
+     * Resolves the registry name of a Bukkit world
+     *
+     * @param world The world
+     * @return The world name inside the worlds directory, or null if the world is not an Athena world
+     */
+    public String nameOf(World world) {
+        Path path = Paths.get(world.getName());
+        if (path.getParent() == null || !path.getParent().equals(worldsDirectory.toPath())) {
+            return null;
+        }
+        return path.getFileName().toString();
+    }
+
+    void register(WorldWrapper wrapper) {
+        wrappers.putIfAbsent(wrapper.getWorldName(), wrapper);
+        index.add(wrapper.getWorldName());
+    }
+
+    void unregister(String worldName) {
+        wrappers.remove(worldName);
+        loadedWorlds.remove(worldName);
+        index.remove(worldName);
+    }
+
+    public void markLoaded(World world) {
+        String worldName = nameOf(world);
+        if (worldName != null) {
+            loadedWorlds.add(worldName);
+            index.add(worldName);
+        }
+    }
+
+    public void markUnloaded(World world) {
+        String worldName = nameOf(world);
+        if (worldName == null) {
+            return;
+        }
+
+        loadedWorlds.remove(worldName);
+        WorldWrapper wrapper = wrappers.get(worldName);
+        if (wrapper != null) {
+            wrapper.detachWorld();
+        }
+    }
+
+    private void rescan() {
+        List<String> names = new ArrayList<>();
+        File[] files = worldsDirectory.listFiles(File::isDirectory);
+        if (files != null) {
+            for (File file : files) {
+                names.add(file.getName());
+            }
+        }
+
+        index.replaceAll(names);
+        wrappers.keySet().retainAll(names);
+    }
+
+    private void startWatching() {
+        if (!worldsDirectory.isDirectory() && !worldsDirectory.mkdirs()) {
+            plugin.getLogger().warning("Could not create " + worldsDirectory + ", external changes will not be picked up");
+            return;
+        }
+
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            worldsDirectory.toPath().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to watch worlds directory, external changes will not be picked up", e);
+            return;
+        }
+
+        Thread watchThread = new Thread(this::watchLoop, "AthenaBuild-WorldWatcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        rescan();
+                        continue;
+                    }
+
+                    String worldName = ((Path) event.context()).getFileName().toString();
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        if (new File(worldsDirectory, worldName).isDirectory()) {
+                            index.add(worldName);
+                        }
+                    } else if (!loadedWorlds.contains(worldName)) {
+                        wrappers.remove(worldName);
+                        index.remove(worldName);
+                    }
+                }
+
+                if (!key.reset()) {
+                    plugin.getLogger().warning("Worlds directory is no longer accessible, stopped watching it");
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Plugin is shutting down
+        }
+    }
+}
@@ -1,12 +1,24 @@
 package dev.alexanderdiaz.athenabuild.world;
 
 import dev.alexanderdiaz.athenabuild.AthenaBuild;
+import dev.alexanderdiaz.athenabuild.service.WorldExporter;
+import dev.alexanderdiaz.athenabuild.util.FileUtils;
+import dev.alexanderdiaz.athenabuild.util.RegionFile;
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 import java.util.logging.Level;
+import java.util.stream.Stream;
 import lombok.Getter;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -14,9 +26,16 @@ import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.WorldCreator;
 import org.bukkit.util.Vector;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
 
 public class WorldWrapper {
     public static final String WORLDS_DIRECTORY = "athena_worlds";
+    // Identify a world to the server, which refuses to load two worlds with the same uid, or to the export
+    // it was imported from, which a clone no longer follows
+    private static final Set<String> CLONE_EXCLUDED_FILES = Set.of("uid.dat", "session.lock", WorldExporter.EXPORT_FILE);
 
     private final AthenaBuild plugin;
     @Getter
@@ -47,22 +66,11 @@ public class WorldWrapper {
      */
     public boolean createVoidWorld() {
         try {
-            // Ensure world directory exists
-            if (!worldDirectory.exists() && !worldDirectory.mkdirs()) {
-                throw new IOException("Failed to create world directory");
-            }
-
-            // Create world using void generator and direct path
-            WorldCreator creator = new WorldCreator(worldDirectory.toPath().toString())
-                    .generator(new NullChunkGenerator());
-
-            this.world = creator.createWorld();
-            if (world == null) {
-                throw new IllegalStateException("Failed to create world");
-            }
+            this.world = generateVoidWorld(worldDirectory);
 
-            // Initialize world
-            initializeWorld();
+            // Save spawn location to config
+            config.setSpawnLocation(world.getSpawnLocation());
+            plugin.getWorldRegistry().register(this);
             return true;
 
         } catch (Exception e) {
@@ -72,28 +80,236 @@ public class WorldWrapper {
     }
 
     /**
-     * Imports a world from a source directory
+     * Creates the world from a void world created ahead of time by {@link WorldPool}. The world is moved
+     * into the world directory and loaded without preparing its spawn area, nobody is in the new world
+     * yet and {@code /open} loads it when it is needed. Must be called on the main thread.
      *
-     * @param sourceDir The source directory containing the world files
-     * @return true if world was imported successfully
+     * @param pooledDir The directory of the unloaded pooled world
+     * @return true if world was created successfully. On false the pooled world is back in the pool, or
+     * deleted if it could not be moved
      */
-    public boolean importWorld(File sourceDir) {
+    public boolean claimPooledWorld(File pooledDir) {
+        // The pool already handed the world out, it goes back or is deleted so it is not leaked
+        if (worldDirectory.exists()) {
+            plugin.getLogger().warning("Failed to claim pooled world " + pooledDir.getName() + " for " + worldName
+                    + ", the world directory already exists");
+            plugin.getWorldPool().release(pooledDir);
+            return false;
+        }
+
         try {
-            if (isLoaded()) {
-                throw new IllegalStateException("World is already loaded");
+            File parent = worldDirectory.getAbsoluteFile().getParentFile();
+            if (!parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Failed to create worlds directory");
             }
+            Files.move(pooledDir.toPath(), worldDirectory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to claim pooled world " + pooledDir.getName() + " for " + worldName, e);
+            plugin.getWorldPool().discard(pooledDir);
+            return false;
+        }
 
-            if (!worldDirectory.exists() && !worldDirectory.mkdirs()) {
-                throw new IOException("Failed to create world directory");
+        plugin.getWorldRegistry().register(this);
+        long start = System.nanoTime();
+        if (!loadWorld(false)) {
+            return false;
+        }
+
+        config.setSpawnLocation(world.getSpawnLocation());
+        plugin.getLogger().info("Created world " + worldName + " from the world pool in "
+                + (System.nanoTime() - start) / 1_000_000 + "ms on the main thread");
+        return true;
+    }
+
+    /**
+     * Creates a void world with a glass platform at its spawn. Must be called on the main thread.
+     *
+     * @param directory The world directory, which is also the Bukkit world name
+     * @return The loaded world
+     * @throws IOException If the world directory could not be created
+     */
+    static World generateVoidWorld(File directory) throws IOException {
+        // Ensure world directory exists
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Failed to create world directory");
+        }
+
+        // Create world using void generator and direct path
+        WorldCreator creator = new WorldCreator(directory.toPath().toString())
+                .generator(new NullChunkGenerator());
+
+        World world = creator.createWorld();
+        if (world == null) {
+            throw new IllegalStateException("Failed to create world");
+        }
+
+        // Set basic world settings
+        world.setSpawnLocation(0, 64, 0);
+        world.setGameRuleValue("doMobSpawning", "false");
+        world.setTime(6000); // Set to midday
+        world.setAutoSave(true);
+        world.save();
+
+        Vector min = new Vector(-1, 63, -1);
+        Vector max = new Vector(1, 63, 1);
+
+        for (int x = min.getBlockX(); x <= max.getBlockX(); x++) {
+            for (int y = min.getBlockY(); y <= max.getBlockY(); y++) {
+                for (int z = min.getBlockZ(); z <= max.getBlockZ(); z++) {
+                    world.getBlockAt(x, y, z).setType(Material.GLASS);
+                }
             }
+        }
+        return world;
+    }
 
+    /**
+     * Moves the files of a world to import into the world directory. This does no Bukkit calls and
+     * should run asynchronously, the world is loaded afterwards with {@link #loadImportedWorld()}.
+     * The source directory is moved when it is on the same file system and copied otherwise.
+     *
+     * @param sourceDir The source directory containing the world files
+     * @throws IOException If the world directory already exists or the files could not be staged
+     */
+    public void stageWorld(File sourceDir) throws IOException {
+        if (worldDirectory.exists()) {
+            throw new IOException("World directory already exists: " + worldDirectory);
+        }
+
+        File parent = worldDirectory.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Failed to create worlds directory");
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            Files.move(sourceDir.toPath(), worldDirectory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Different file system, fall back to copying the files
+            if (!worldDirectory.mkdirs()) {
+                throw new IOException("Failed to create world directory");
+            }
             copyDirectory(sourceDir.toPath(), worldDirectory.toPath());
+        }
 
-            boolean loadSuccess = loadWorld();
+        plugin.getWorldRegistry().register(this);
+        plugin.getLogger().info("Staged world " + worldName + " in " + (System.currentTimeMillis() - start) + "ms");
+    }
 
-            config.setSpawnLocation(world.getSpawnLocation());
+    /**
+     * Applies a patch created by {@code /download --since} to the world files. Changed files replace the
+     * existing ones, changed chunks are merged into the existing region files and removed files and chunks
+     * are deleted. The world must not be loaded, see {@link WorldRegistry#beginMaintenance}.
+     *
+     * @param patchDir The extracted patch, containing {@link WorldExporter#PATCH_FILE}
+     * @return The number of files changed
+     * @throws IOException If the patch is invalid or the world files could not be written
+     */
+    @SuppressWarnings("unchecked")
+    public int applyPatch(File patchDir) throws IOException {
+        JSONObject patch;
+        try (Reader reader = Files.newBufferedReader(new File(patchDir, WorldExporter.PATCH_FILE).toPath(), StandardCharsets.UTF_8)) {
+            patch = (JSONObject) new JSONParser().parse(reader);
+        } catch (ParseException | ClassCastException e) {
+            throw new IOException("Invalid patch file", e);
+        }
 
-            return loadSuccess;
+        // A patch only holds the changes since its base, applied to anything else it would mix two worlds
+        Object base = patch.get("base");
+        String exportId = WorldExporter.readExportId(worldDirectory);
+        if (exportId == null) {
+            throw new IOException(worldName + " was not imported from a download, patches can only be applied to downloaded worlds");
+        }
+        if (!exportId.equals(base)) {
+            throw new IOException("The patch is for export " + base + " but " + worldName + " is at export " + exportId);
+        }
+
+        long start = System.currentTimeMillis();
+        Map<String, JSONArray> removedChunks = (Map<String, JSONArray>) patch.getOrDefault("removed_chunks", new JSONObject());
+        List<Path> patchFiles;
+        try (Stream<Path> paths = Files.walk(patchDir.toPath())) {
+            patchFiles = paths.filter(Files::isRegularFile).toList();
+        }
+
+        int changed = 0;
+        for (Path patchFile : patchFiles) {
+            String relativePath = patchDir.toPath().relativize(patchFile).toString().replace(File.separatorChar, '/');
+            if (relativePath.equals(WorldExporter.PATCH_FILE) || relativePath.equals(WorldExporter.EXPORT_FILE)) {
+                continue;
+            }
+
+            File target = FileUtils.resolveInside(worldDirectory, relativePath);
+            target.getParentFile().mkdirs();
+            if (relativePath.endsWith(".mca")) {
+                mergeRegion(target, RegionFile.read(patchFile), removedChunks.remove(relativePath));
+            } else {
+                Files.move(patchFile, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            changed++;
+        }
+
+        // Region files whose chunks were only removed
+        for (Map.Entry<String, JSONArray> entry : removedChunks.entrySet()) {
+            File target = FileUtils.resolveInside(worldDirectory, entry.getKey());
+            if (target.isFile()) {
+                mergeRegion(target, null, entry.getValue());
+                changed++;
+            }
+        }
+
+        for (Object path : (JSONArray) patch.getOrDefault("deleted", new JSONArray())) {
+            if (Files.deleteIfExists(FileUtils.resolveInside(worldDirectory, (String) path).toPath())) {
+                changed++;
+            }
+        }
+
+        WorldExporter.writeExportId(worldDirectory, (String) patch.get("export"));
+        plugin.getLogger().info("Applied patch " + patch.get("export") + " to " + worldName + ": " + changed
+                + " files changed in " + (System.currentTimeMillis() - start) + "ms");
+        return changed;
+    }
+
+    private void mergeRegion(File target, RegionFile changes, JSONArray removedChunks) throws IOException {
+        RegionFile region = target.isFile() ? RegionFile.read(target.toPath()) : RegionFile.empty();
+        if (changes != null) {
+            for (int index = 0; index < RegionFile.CHUNK_COUNT; index++) {
+                if (changes.hasChunk(index)) {
+                    region.copyChunk(changes, index);
+                }
+            }
+        }
+        if (removedChunks != null) {
+            for (Object index : removedChunks) {
+                int chunkIndex = ((Number) index).intValue();
+                if (chunkIndex < 0 || chunkIndex >= RegionFile.CHUNK_COUNT) {
+                    throw new IOException("Invalid chunk index in patch: " + chunkIndex);
+                }
+                region.removeChunk(chunkIndex);
+            }
+        }
+        region.writeTo(target.toPath());
+    }
+
+    /**
+     * Loads a world staged by {@link #stageWorld(File)}. Must be called on the main thread.
+     *
+     * @return true if world was loaded successfully
+     */
+    public boolean loadImportedWorld() {
+        try {
+            if (isLoaded()) {
+                throw new IllegalStateException("World is already loaded");
+            }
+
+            long start = System.nanoTime();
+            if (!loadWorld()) {
+                return false;
+            }
+
+            config.setSpawnLocation(world.getSpawnLocation());
+            plugin.getLogger().info("Loaded imported world " + worldName + " in "
+                    + (System.nanoTime() - start) / 1_000_000 + "ms on the main thread");
+            return true;
 
         } catch (Exception e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to import world: " + worldName, e);
@@ -107,11 +323,29 @@ public class WorldWrapper {
      * @return true if world was loaded successfully
      */
     public boolean loadWorld() {
+        return loadWorld(true);
+    }
+
+    /**
+     * Loads the world if it exists. Must be called on the main thread.
+     *
+     * @param prepareSpawnArea false to not load the spawn area while loading the world and not keep it
+     *                         loaded, for callers that load the chunks they need themselves, see
+     *                         {@link ChunkPreloader}. Ignored if {@code worlds.skip_spawn_area} is enabled.
+     * @return true if world was loaded successfully
+     */
+    public boolean loadWorld(boolean prepareSpawnArea) {
+        if (!prepareSpawnArea) {
+            plugin.getWorldRegistry().skipSpawnArea(worldName);
+        }
         try {
             // Check if world directory exists
             if (!worldDirectory.exists()) {
                 throw new IllegalStateException("World directory does not exist");
             }
+            if (plugin.getWorldRegistry().isUnderMaintenance(worldName)) {
+                throw new IllegalStateException("World files are being rewritten");
+            }
 
             // Create and load world using direct path
             WorldCreator creator = new WorldCreator(worldDirectory.toPath().toString())
@@ -127,6 +361,8 @@ public class WorldWrapper {
         } catch (Exception e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to load world: " + worldName, e);
             return false;
+        } finally {
+            plugin.getWorldRegistry().prepareSpawnArea(worldName);
         }
     }
 
@@ -163,6 +399,8 @@ public class WorldWrapper {
 
             // Delete world directory
             deleteDirectory(worldDirectory);
+            plugin.getWorldRegistry().unregister(worldName);
+            plugin.getWorldExporter().forget(worldName);
             return true;
 
         } catch (Exception e) {
@@ -200,6 +438,236 @@ public class WorldWrapper {
         return worldDirectory.exists();
     }
 
+    /**
+     * The world files to export from, see {@link #snapshot}. Must be closed once the export is done.
+     */
+    public final class Snapshot implements AutoCloseable {
+        private final File directory;
+        private final boolean copy;
+        private boolean closed;
+
+        private Snapshot(File directory, boolean copy) {
+            this.directory = directory;
+            this.copy = copy;
+        }
+
+        /**
+         * @return The directory to export, either a copy of the world or the world directory itself if the
+         * world is not loaded, or null if the world does not need to be exported
+         */
+        public File getDirectory() {
+            return directory;
+        }
+
+        /**
+         * Deletes the copy, or lets the world load again if it is exported in place. Does nothing when
+         * called again.
+         */
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            if (!copy) {
+                plugin.getWorldRegistry().endMaintenance(worldName);
+            } else if (directory != null && directory.exists()) {
+                FileUtils.deleteDirectory(directory);
+            }
+        }
+    }
+
+    /**
+     * Creates a consistent view of the world files to export from. A loaded world is copied, see
+     * {@link #withSavedFiles}. An unloaded world is not copied at all, instead it is kept from loading or
+     * being rewritten until the snapshot is closed. Must be called on the main thread.
+     *
+     * @param snapshotDir The directory to copy the world into, must not exist
+     * @param include     Tests the path of each file relative to the world directory, using {@code /} as
+     *                    separator, only matching files are copied
+     * @param needsCopy   Tested off the main thread on the saved world directory before it is copied,
+     *                    returning false skips the copy, e.g. because the world is unchanged since its last export
+     * @return A future completed off the main thread with the snapshot, which the caller must close
+     */
+    public CompletableFuture<Snapshot> snapshot(File snapshotDir, Predicate<String> include, Predicate<File> needsCopy) {
+        if (!isLoaded()) {
+            if (!plugin.getWorldRegistry().beginMaintenance(worldName)) {
+                return CompletableFuture.failedFuture(new IllegalStateException("World " + worldName + " is busy, try again later"));
+            }
+            return CompletableFuture.supplyAsync(() -> new Snapshot(needsCopy.test(worldDirectory) ? worldDirectory : null, false),
+                            runnable -> Bukkit.getScheduler().runTaskAsynchronously(plugin, runnable))
+                    .whenComplete((snapshot, error) -> {
+                        if (error != null) {
+                            plugin.getWorldRegistry().endMaintenance(worldName);
+                        }
+                    });
+        }
+
+        return withSavedFiles(directory -> {
+            if (!needsCopy.test(directory)) {
+                return new Snapshot(null, true);
+            }
+
+            long copyStart = System.currentTimeMillis();
+            try {
+                copyDirectory(directory.toPath(), snapshotDir.toPath(), include);
+            } catch (IOException | RuntimeException e) {
+                FileUtils.deleteDirectory(snapshotDir);
+                throw e;
+            }
+            plugin.getLogger().info("Copied " + worldName + " snapshot in " + (System.currentTimeMillis() - copyStart) + "ms");
+            return new Snapshot(snapshotDir, true);
+        });
+    }
+
+    /**
+     * Runs a task on the files of a loaded world off the main thread while nothing writes to them. The
+     * world is saved once on the main thread with autosave paused, and its chunks are kept from unloading
+     * until the task is done. Autosave resumes as soon as the task is finished. Must be called on the
+     * main thread.
+     *
+     * @param task The task, given the world directory
+     * @return A future completed off the main thread with the result of the task, once the world is
+     * unfrozen again, so whatever runs after the task does not hold up the world
+     */
+    private <T> CompletableFuture<T> withSavedFiles(FileTask<T> task) {
+        if (!plugin.getWorldRegistry().freeze(worldName)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("A snapshot of " + worldName + " is already in progress"));
+        }
+
+        World snapshotWorld = world;
+        boolean autoSave = snapshotWorld.isAutoSave();
+
+        long start = System.nanoTime();
+        snapshotWorld.setAutoSave(false);
+        snapshotWorld.save();
+        plugin.getLogger().info("Saved " + worldName + " for snapshot in "
+                + (System.nanoTime() - start) / 1_000_000 + "ms on the main thread");
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            T result = null;
+            Exception failure = null;
+            try {
+                awaitPendingChunkWrites();
+                result = task.run(worldDirectory);
+            } catch (Exception e) {
+                failure = e;
+            }
+
+            T taskResult = result;
+            Exception taskFailure = failure;
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                plugin.getWorldRegistry().unfreeze(worldName);
+                snapshotWorld.setAutoSave(autoSave);
+                Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                    if (taskFailure != null) {
+                        future.completeExceptionally(taskFailure);
+                    } else {
+                        future.complete(taskResult);
+                    }
+                });
+            });
+        });
+        return future;
+    }
+
+    /**
+     * Chunks saved by {@link World#save()} are queued on the server's file IO thread and written later.
+     * Waits for that queue to drain so the region files are complete before they are copied.
+     */
+    private void awaitPendingChunkWrites() {
+        try {
+            drainFileIoThread();
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Could not wait for pending chunk writes, the snapshot of " + worldName + " may miss recent changes", e);
+        }
+    }
+
+    /**
+     * Blocks until the server's file IO thread has written all queued chunks, of every world
+     *
+     * @throws ReflectiveOperationException If the server has no file IO thread to wait for
+     */
+    static void drainFileIoThread() throws ReflectiveOperationException {
+        String version = Bukkit.getServer().getClass().getPackage().getName();
+        version = version.substring(version.lastIndexOf('.') + 1);
+        Class<?> fileIoThread = Class.forName("net.minecraft.server." + version + ".FileIOThread");
+        Object instance = fileIoThread.getMethod("a").invoke(null);
+        fileIoThread.getMethod("b").invoke(instance);
+    }
+
+    /**
+     * Creates the world as a copy of another world, e.g. with {@code /create --template}. A loaded template
+     * is saved and kept from writing while its files are copied into the world directory, see
+     * {@link #withSavedFiles}, so it is frozen only as long as a snapshot copy takes. An unloaded template is
+     * kept from loading while it is cloned, see {@link #cloneDirectory}, which only takes no time on
+     * file systems with reflink support, elsewhere it is a full copy as well. The files identifying the
+     * template are left out, so both worlds can be loaded at the same time. The world cannot be loaded
+     * until it is complete. Must be called on the main thread.
+     *
+     * @param template The world to clone
+     * @return A future completed once the world is registered and can be loaded, on failure the partly
+     * cloned files are deleted
+     */
+    public CompletableFuture<Void> cloneFrom(WorldWrapper template) {
+        if (exists()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("World " + worldName + " already exists"));
+        }
+        if (!plugin.getWorldRegistry().beginMaintenance(worldName)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("World " + worldName + " is busy, try again later"));
+        }
+
+        CompletableFuture<Void> clone;
+        if (template.isLoaded()) {
+            clone = template.withSavedFiles(directory -> {
+                // Copied like a snapshot, a failed cp would copy everything a second time while the template is frozen
+                cloneWorldFiles(directory, false);
+                return null;
+            });
+        } else if (plugin.getWorldRegistry().beginMaintenance(template.getWorldName())) {
+            clone = CompletableFuture.runAsync(() -> {
+                        try {
+                            cloneWorldFiles(template.getWorldDirectory(), true);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, runnable -> Bukkit.getScheduler().runTaskAsynchronously(plugin, runnable))
+                    .whenComplete((ignored, error) -> plugin.getWorldRegistry().endMaintenance(template.getWorldName()));
+        } else {
+            clone = CompletableFuture.failedFuture(new IllegalStateException("World " + template.getWorldName() + " is busy, try again later"));
+        }
+
+        return clone.whenComplete((ignored, error) -> {
+            if (error != null) {
+                FileUtils.deleteDirectory(worldDirectory);
+            } else {
+                plugin.getWorldRegistry().register(this);
+            }
+            plugin.getWorldRegistry().endMaintenance(worldName);
+        });
+    }
+
+    private void cloneWorldFiles(File sourceDir, boolean reflink) throws IOException {
+        long start = System.currentTimeMillis();
+        Predicate<String> include = path -> !CLONE_EXCLUDED_FILES.contains(path);
+        if (reflink) {
+            cloneDirectory(sourceDir.toPath(), worldDirectory.toPath(), include);
+        } else {
+            copyDirectory(sourceDir.toPath(), worldDirectory.toPath(), include);
+        }
+        plugin.getLogger().info((reflink ? "Cloned " : "Copied ") + sourceDir.getName() + " into " + worldName + " in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Drops the reference to the Bukkit world once it has been unloaded
+     */
+    void detachWorld() {
+        this.world = null;
+    }
+
     public Location getSpawnLocation() {
         if (world == null) {
             return null;
@@ -228,33 +696,6 @@ public class WorldWrapper {
         return true;
     }
 
-    private void initializeWorld() {
-        if (!isLoaded()) {
-            return;
-        }
-
-        // Set basic world settings
-        world.setSpawnLocation(0, 64, 0);
-        world.setGameRuleValue("doMobSpawning", "false");
-        world.setTime(6000); // Set to midday
-        world.setAutoSave(true);
-        world.save();
-
-        Vector min = new Vector(-1, 63, -1);
-        Vector max = new Vector(1, 63, 1);
-
-        for (int x = min.getBlockX(); x <= max.getBlockX(); x++) {
-            for (int y = min.getBlockY(); y <= max.getBlockY(); y++) {
-                for (int z = min.getBlockZ(); z <= max.getBlockZ(); z++) {
-                    world.getBlockAt(x, y, z).setType(Material.GLASS);
-                }
-            }
-        }
-
-        // Save spawn location to config
-        config.setSpawnLocation(world.getSpawnLocation());
-    }
-
     public void prepareImportedWorld() {
         if (!isLoaded()) {
             loadWorld();
@@ -270,10 +711,19 @@ public class WorldWrapper {
     }
 
     private void copyDirectory(Path source, Path target) throws IOException {
+        copyDirectory(source, target, path -> true);
+    }
+
+    private void copyDirectory(Path source, Path target, Predicate<String> include) throws IOException {
+        Files.createDirectories(target.getParent());
         Files.walk(source)
                 .forEach(sourcePath -> {
                     try {
-                        Path targetPath = target.resolve(source.relativize(sourcePath));
+                        Path relativePath = source.relativize(sourcePath);
+                        if (!Files.isDirectory(sourcePath) && !include.test(relativePath.toString().replace(File.separatorChar, '/'))) {
+                            return;
+                        }
+                        Path targetPath = target.resolve(relativePath);
                         Files.copy(sourcePath, targetPath, StandardCopyOption.REPLACE_EXISTING);
                     } catch (IOException e) {
                         throw new RuntimeException(e);
@@ -281,6 +731,44 @@ public class WorldWrapper {
                 });
     }
 
+    /**
+     * Copies a directory with {@code cp --reflink=auto}. On copy-on-write file systems such as btrfs and
+     * XFS this clones the files, which share their blocks with the originals until either is written, so
+     * the copy takes no time and no disk space. Elsewhere, e.g. on ext4, cp copies the files, which takes as
+     * long as the world is large. Java cannot clone files, where cp is unavailable or fails the files are
+     * copied in Java instead.
+     */
+    private void cloneDirectory(Path source, Path target, Predicate<String> include) throws IOException {
+        Files.createDirectories(target.getParent());
+        try {
+            Process process = new ProcessBuilder("cp", "-R", "--reflink=auto", source.toString(), target.toString())
+                    .redirectErrorStream(true)
+                    .start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            if (process.waitFor() == 0) {
+                try (Stream<Path> paths = Files.walk(target)) {
+                    for (Path path : (Iterable<Path>) paths::iterator) {
+                        if (!Files.isDirectory(path) && !include.test(target.relativize(path).toString().replace(File.separatorChar, '/'))) {
+                            Files.delete(path);
+                        }
+                    }
+                }
+                return;
+            }
+            plugin.getLogger().warning("Could not clone " + source.getFileName() + " with cp, copying it instead: " + output.trim());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while cloning " + source.getFileName(), e);
+        } catch (IOException e) {
+            // No cp on this system
+        }
+
+        if (Files.exists(target)) {
+            deleteDirectory(target.toFile());
+        }
+        copyDirectory(source, target, include);
+    }
+
     private void deleteDirectory(File directory) {
         File[] files = directory.listFiles();
         if (files != null) {
@@ -294,4 +782,9 @@ public class WorldWrapper {
         }
         directory.delete();
     }
+
+    @FunctionalInterface
+    private interface FileTask<T> {
+        T run(File directory) throws IOException;
+    }
 }
\ No newline at end of file